@@ -40,10 +40,11 @@ public class CategoryController {
     }
 
     @GetMapping("/categories")
-    public ResponseEntity<List<CategoryDto>> getAll(@RequestParam(defaultValue = "0") Integer from,
+    public ResponseEntity<List<CategoryDto>> getAll(@RequestParam(required = false) String after,
+                                                    @RequestParam(defaultValue = "0") Integer from,
                                                 @RequestParam(defaultValue = "10") Integer size) {
         log.info("Received GET-request at /categories?from={}&size={} endpoint", from, size);
-        return ResponseEntity.ok().body(categoryService.getAll(from, size));
+        return categoryService.getAll(after, from, size).toResponse();
     }
 
     @GetMapping("/categories/{id}")
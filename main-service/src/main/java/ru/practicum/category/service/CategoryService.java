@@ -2,8 +2,7 @@ package ru.practicum.category.service;
 
 import ru.practicum.category.dto.CategoryDto;
 import ru.practicum.category.dto.NewCategoryDto;
-
-import java.util.List;
+import ru.practicum.util.CursorPage;
 
 public interface CategoryService {
 
@@ -13,7 +12,7 @@ public interface CategoryService {
 
     void delete(long catId);
 
-    List<CategoryDto> getAll(Integer from, Integer size);
+    CursorPage<CategoryDto> getAll(String after, Integer from, Integer size);
 
     CategoryDto find(long catId);
 
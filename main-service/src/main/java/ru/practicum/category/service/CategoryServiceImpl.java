@@ -3,6 +3,7 @@ package ru.practicum.category.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import ru.practicum.category.dto.CategoryDto;
 import ru.practicum.category.dto.NewCategoryDto;
@@ -14,6 +15,8 @@ import ru.practicum.event.repo.EventRepository;
 import ru.practicum.exception.ConflictException;
 import ru.practicum.exception.NotFoundException;
 import ru.practicum.exception.ValidationException;
+import ru.practicum.util.Cursor;
+import ru.practicum.util.CursorPage;
 
 import java.util.List;
 import java.util.Optional;
@@ -123,12 +126,14 @@ public class CategoryServiceImpl implements CategoryService {
     }
 
     @Override
-    public List<CategoryDto> getAll(Integer from, Integer size) {
+    public CursorPage<CategoryDto> getAll(String after, Integer from, Integer size) {
         validateSearchParameters(from, size);
-        List<Category> categories = categoryRepository.findAll(PageRequest.of(from / size, size)).toList();
-        return categories.stream()
+        long afterId = after != null ? Cursor.decode(after, Cursor.ID_SORT).getId() : 0;
+        PageRequest pageRequest = PageRequest.of(after != null ? 0 : from / size, size, Sort.by("id"));
+        List<Category> categories = categoryRepository.findAllByIdGreaterThan(afterId, pageRequest);
+        return CursorPage.of(categories.stream()
                 .map(categoryMapper::toCategoryDto)
-                .collect(Collectors.toList());
+                .collect(Collectors.toList()), size, category -> Cursor.ofId(category.getId()));
     }
 
     private void validateSearchParameters(int from, int size) {
@@ -22,10 +22,11 @@ public class CompilationController {
 
     @GetMapping("/compilations")
     public ResponseEntity<List<CompilationDto>> getCompilations(@RequestParam(required = false) Boolean pinned,
+                                                                @RequestParam(required = false) String after,
                                                                 @RequestParam(defaultValue = "0") Integer from,
                                                                 @RequestParam(defaultValue = "10") Integer size) {
         log.info("Received GET-request at /compilations endpoint");
-        return ResponseEntity.ok().body(compilationService.getCompilations(pinned, from, size));
+        return compilationService.getCompilations(pinned, after, from, size).toResponse();
     }
 
     @GetMapping("/compilations/{compId}")
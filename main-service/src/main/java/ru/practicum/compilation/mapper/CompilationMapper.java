@@ -1,6 +1,7 @@
 package ru.practicum.compilation.mapper;
 
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
 import ru.practicum.compilation.dto.CompilationDto;
 import ru.practicum.compilation.dto.NewCompilationDto;
 import ru.practicum.compilation.model.Compilation;
@@ -14,6 +15,7 @@ public interface CompilationMapper {
 
     Compilation toCompilation(CompilationDto compilationDto);
 
+    @Mapping(target = "events", ignore = true)
     CompilationDto toCompilationDto(Compilation compilation);
 
     Compilation toCompilation(NewCompilationDto newCompilationDto);
@@ -10,6 +10,8 @@ import java.util.List;
 @Repository
 public interface CompilationRepository extends JpaRepository<Compilation, Long> {
 
-    List<Compilation> findAllByPinned(Boolean pinned, Pageable pageable);
+    List<Compilation> findAllByPinnedAndIdGreaterThan(Boolean pinned, long afterId, Pageable pageable);
+
+    List<Compilation> findAllByIdGreaterThan(long afterId, Pageable pageable);
 
 }
\ No newline at end of file
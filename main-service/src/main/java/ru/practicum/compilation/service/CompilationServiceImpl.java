@@ -3,6 +3,9 @@ package ru.practicum.compilation.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Service;
 import ru.practicum.compilation.dto.CompilationDto;
 import ru.practicum.compilation.dto.NewCompilationDto;
@@ -10,14 +13,22 @@ import ru.practicum.compilation.dto.UpdateCompilationRequest;
 import ru.practicum.compilation.mapper.CompilationMapper;
 import ru.practicum.compilation.model.Compilation;
 import ru.practicum.compilation.repo.CompilationRepository;
+import ru.practicum.event.dto.EventShortDto;
 import ru.practicum.event.model.Event;
 import ru.practicum.event.repo.EventRepository;
+import ru.practicum.event.service.EventEnricher;
 import ru.practicum.exception.NotFoundException;
 import ru.practicum.exception.ValidationException;
+import ru.practicum.util.Cursor;
+import ru.practicum.util.CursorPage;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -28,18 +39,54 @@ public class CompilationServiceImpl implements CompilationService {
     private final CompilationRepository compilationRepository;
     private final CompilationMapper compilationMapper;
     private final EventRepository eventRepository;
+    private final EventEnricher eventEnricher;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
 
     @Override
-    public List<CompilationDto> getCompilations(Boolean pinned, int from, int size) {
+    public CursorPage<CompilationDto> getCompilations(Boolean pinned, String after, int from, int size) {
         List<Compilation> compilations;
+        long afterId = after != null ? Cursor.decode(after, Cursor.ID_SORT).getId() : 0;
+        PageRequest pageRequest = PageRequest.of(after != null ? 0 : from, size, Sort.by("id"));
         if (pinned == null) {
-            compilations = compilationRepository.findAll(PageRequest.of(from, size)).getContent();
+            compilations = compilationRepository.findAllByIdGreaterThan(afterId, pageRequest);
         } else {
-            compilations = compilationRepository.findAllByPinned(pinned, PageRequest.of(from, size));
+            compilations = compilationRepository.findAllByPinnedAndIdGreaterThan(pinned, afterId, pageRequest);
         }
         log.info("Найдены подборки событий {}", compilations);
+        return CursorPage.of(toCompilationDtos(compilations), size, compilation -> Cursor.ofId(compilation.getId()));
+    }
+
+    private List<CompilationDto> toCompilationDtos(List<Compilation> compilations) {
+        if (compilations.isEmpty()) {
+            return List.of();
+        }
+        String sql = "SELECT compilation_id, event_id\n" +
+                "FROM PUBLIC.COMPILATION_EVENTS\n" +
+                "WHERE compilation_id IN (:compilationIds)\n" +
+                "ORDER BY compilation_id, event_id";
+        MapSqlParameterSource parameters = new MapSqlParameterSource("compilationIds", compilations.stream()
+                .map(Compilation::getId)
+                .collect(Collectors.toList()));
+        Map<Long, List<Long>> compilationEventIds = new HashMap<>();
+        namedJdbcTemplate.query(sql, parameters, rs -> {
+            compilationEventIds.computeIfAbsent(rs.getLong("compilation_id"), id -> new ArrayList<>())
+                    .add(rs.getLong("event_id"));
+        });
+        List<Long> eventIds = compilationEventIds.values().stream()
+                .flatMap(List::stream)
+                .distinct()
+                .collect(Collectors.toList());
+        Map<Long, EventShortDto> events = eventEnricher.toEventShortDtos(eventRepository.findAllById(eventIds)).stream()
+                .collect(Collectors.toMap(EventShortDto::getId, Function.identity()));
         return compilations.stream()
-                .map(compilationMapper::toCompilationDto)
+                .map(compilation -> {
+                    CompilationDto compilationDto = compilationMapper.toCompilationDto(compilation);
+                    compilationDto.setEvents(compilationEventIds.getOrDefault(compilation.getId(), List.of()).stream()
+                            .map(events::get)
+                            .filter(Objects::nonNull)
+                            .collect(Collectors.toList()));
+                    return compilationDto;
+                })
                 .collect(Collectors.toList());
     }
 
@@ -47,7 +94,7 @@ public class CompilationServiceImpl implements CompilationService {
     public CompilationDto searchCompilation(long compId) {
         Compilation foundCompilation = findCompilation(compId);
         log.info("Найдена подборка событий {}", foundCompilation);
-        return compilationMapper.toCompilationDto(foundCompilation);
+        return toCompilationDtos(List.of(foundCompilation)).get(0);
     }
 
     private Compilation findCompilation(long compId) {
@@ -67,7 +114,7 @@ public class CompilationServiceImpl implements CompilationService {
         Compilation compilation = compilationMapper.toCompilation(newCompilationDto);
         Compilation savedCompilation = compilationRepository.save(compilation);
         log.info("Добавлена новая подборка событий {}", savedCompilation);
-        return compilationMapper.toCompilationDto(savedCompilation);
+        return toCompilationDtos(List.of(savedCompilation)).get(0);
     }
 
     private void validateNewCompilation(NewCompilationDto newCompilationDto) {
@@ -114,7 +161,7 @@ public class CompilationServiceImpl implements CompilationService {
         }
         Compilation updatedCompilation = compilationRepository.save(foundCompilation);
         log.info("Изменена подборка событий: {} vs. {}", foundCompilation, updatedCompilation);
-        return compilationMapper.toCompilationDto(updatedCompilation);
+        return toCompilationDtos(List.of(updatedCompilation)).get(0);
     }
 
     private Event findEvent(long eventId) {
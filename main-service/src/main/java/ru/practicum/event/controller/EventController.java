@@ -6,7 +6,7 @@ import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import ru.practicum.client.HitClient;
+import ru.practicum.client.HitReporter;
 import ru.practicum.event.dto.*;
 import ru.practicum.event.service.EventService;
 import ru.practicum.hit.dto.EndpointHitDto;
@@ -26,7 +26,7 @@ import java.util.List;
 public class EventController {
 
     private final EventService eventService;
-    private final HitClient hitClient;
+    private final HitReporter hitReporter;
 
     @GetMapping("/events")
     public ResponseEntity<List<EventShortDto>> getAll(@RequestParam(required = false) String text,
@@ -35,21 +35,29 @@ public class EventController {
                                                       @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime rangeStart,
                                                       @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime rangeEnd,
                                                       @RequestParam(required = false) Boolean onlyAvailable,
+                                                      @RequestParam(required = false) Double lat,
+                                                      @RequestParam(required = false) Double lon,
+                                                      @RequestParam(required = false) Double radius,
                                                       @RequestParam(required = false) String sort,
+                                                      @RequestParam(required = false) String after,
                                                       @RequestParam(defaultValue = "0") Integer from,
                                                       @RequestParam(defaultValue = "10") Integer size,
                                                       HttpServletRequest request) {
         log.info("Received GET-request at /events endpoint");
         addStat(request);
-        return ResponseEntity.ok().body(eventService.getAll(text,
+        return eventService.getAll(text,
                 categories,
                 paid,
                 rangeStart,
                 rangeEnd,
                 onlyAvailable,
+                lat,
+                lon,
+                radius,
                 sort,
+                after,
                 from,
-                size));
+                size).toResponse();
     }
 
     @GetMapping("/events/{id}")
@@ -66,8 +74,7 @@ public class EventController {
                 .ip(request.getRemoteAddr())
                 .timestamp(LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")))
                 .build();
-        ResponseEntity<Object> response = hitClient.postHit(endpointHit);
-        log.info("Добавлена статистика {}", response);
+        hitReporter.report(endpointHit);
     }
 
     @GetMapping("/admin/events")
@@ -76,18 +83,20 @@ public class EventController {
                                                       @RequestParam(required = false) List<Long> categories,
                                                       @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime rangeStart,
                                                       @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime rangeEnd,
+                                                      @RequestParam(required = false) String after,
                                                       @RequestParam(defaultValue = "0") Integer from,
                                                       @RequestParam(defaultValue = "10") Integer size) {
         log.info("Received GET-request at /admin/events endpoint with parameters " +
-                "users={}, states={}, categories={}, rangeStart={}, rangeEnd={}, from={}, size={}",
-                users, states, categories, rangeStart, rangeEnd, from, size);
-        return ResponseEntity.ok().body(eventService.getAdminAll(users,
+                "users={}, states={}, categories={}, rangeStart={}, rangeEnd={}, after={}, from={}, size={}",
+                users, states, categories, rangeStart, rangeEnd, after, from, size);
+        return eventService.getAdminAll(users,
                 states,
                 categories,
                 rangeStart,
                 rangeEnd,
+                after,
                 from,
-                size));
+                size).toResponse();
     }
 
     @PatchMapping("/admin/events/{eventId}")
@@ -1,6 +1,7 @@
 package ru.practicum.event.dto;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Builder;
 import lombok.Data;
 import org.springframework.format.annotation.DateTimeFormat;
@@ -10,6 +11,7 @@ import ru.practicum.location.dto.LocationDto;
 import ru.practicum.user.dto.UserShortDto;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Data
 @Builder
@@ -40,8 +42,15 @@ public class EventFullDto {
     private LocalDateTime publishedOn;
 
     private Boolean requestModeration;
+    private Boolean rushMode;
     private EventState state;
     private String title;
     private int views;
 
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long rating;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<Long> compilations;
+
 }
\ No newline at end of file
@@ -16,16 +16,30 @@ public interface EventMapper {
 
     @Mapping(target = "creationDate", source = "createdOn")
     @Mapping(target = "publishedDate", source = "publishedOn")
+    @Mapping(target = "compilations", ignore = true)
     Event toEvent(EventFullDto eventFullDto);
 
     @Mapping(target = "createdOn", source = "creationDate")
     @Mapping(target = "publishedOn", source = "publishedDate")
+    @Mapping(target = "compilations", ignore = true)
     EventFullDto toEventFullDto(Event event);
 
     Event toEvent(EventShortDto eventShortDto);
 
     EventShortDto toEventShortDto(Event event);
 
+    @Mapping(target = "category", ignore = true)
+    @Mapping(target = "initiator", ignore = true)
+    EventShortDto toEventShortDtoWithoutRelations(Event event);
+
+    @Mapping(target = "createdOn", source = "creationDate")
+    @Mapping(target = "publishedOn", source = "publishedDate")
+    @Mapping(target = "category", ignore = true)
+    @Mapping(target = "initiator", ignore = true)
+    @Mapping(target = "location", ignore = true)
+    @Mapping(target = "compilations", ignore = true)
+    EventFullDto toEventFullDtoWithoutRelations(Event event);
+
     @Mapping(target = "eventDate", source = "eventDate", dateFormat = "yyyy-MM-dd HH:mm:ss")
     Event toEvent(NewEventDto newEventDto);
 
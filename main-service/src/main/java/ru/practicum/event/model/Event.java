@@ -73,10 +73,18 @@ public class Event {
     @Enumerated(EnumType.STRING)
     private EventState state;
 
-    @ManyToMany(fetch = FetchType.EAGER, mappedBy = "events")
+    @Column(name = "confirmed_requests", insertable = false, updatable = false)
+    private Integer confirmedRequests;
+
+    @Column(name = "rush_mode")
+    private Boolean rushMode;
+
+    @ManyToMany(fetch = FetchType.LAZY, mappedBy = "events")
+    @ToString.Exclude
     private List<Compilation> compilations;
 
     @OneToMany(mappedBy = "event", cascade = CascadeType.ALL)
+    @ToString.Exclude
     private List<Request> requests;
 
     @Override
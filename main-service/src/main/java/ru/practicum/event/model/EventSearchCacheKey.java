@@ -0,0 +1,13 @@
+package ru.practicum.event.model;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class EventSearchCacheKey {
+
+    private final EventSearchQuery query;
+    private final List<Long> versions;
+
+}
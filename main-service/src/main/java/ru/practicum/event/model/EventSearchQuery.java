@@ -0,0 +1,25 @@
+package ru.practicum.event.model;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+public class EventSearchQuery {
+
+    private final String text;
+    private final List<Long> categories;
+    private final Boolean paid;
+    private final LocalDateTime rangeStart;
+    private final LocalDateTime rangeEnd;
+    private final boolean onlyAvailable;
+    private final Double lat;
+    private final Double lon;
+    private final Double radius;
+    private final String sort;
+    private final String after;
+    private final int from;
+    private final int size;
+
+}
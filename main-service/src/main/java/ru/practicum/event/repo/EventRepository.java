@@ -2,31 +2,55 @@ package ru.practicum.event.repo;
 
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.category.model.Category;
 import ru.practicum.event.model.Event;
-import ru.practicum.event.model.EventState;
 import ru.practicum.user.model.User;
 
-import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Repository
 public interface EventRepository extends JpaRepository<Event, Long> {
 
-    List<Event> findAllByInitiatorIdInAndStateInAndCategoryIdInAndEventDateIsAfterAndEventDateIsBefore(
-            List<Long> users,
-            List<EventState> states,
-            List<Long> categories,
-            LocalDateTime rangeStart,
-            LocalDateTime rangeEnd,
-            PageRequest pageRequest);
-
     List<Event> findAllByInitiator(User initiator, PageRequest pageRequest);
 
     Optional<Event> findByIdAndInitiator(long eventId, User initiator);
 
     List<Event> findAllByCategory(Category category);
 
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE events SET confirmed_requests = confirmed_requests + :delta WHERE id = :eventId", nativeQuery = true)
+    int addConfirmedRequests(@Param("eventId") long eventId, @Param("delta") int delta);
+
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE events SET confirmed_requests = confirmed_requests + 1 " +
+            "WHERE id = :eventId AND (participant_limit = 0 OR confirmed_requests < participant_limit)", nativeQuery = true)
+    int reserveConfirmedRequest(@Param("eventId") long eventId);
+
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE events SET confirmed_requests = confirmed_requests + :count " +
+            "WHERE id = :eventId AND (participant_limit = 0 OR confirmed_requests + :count <= participant_limit)", nativeQuery = true)
+    int addConfirmedRequestsWithinLimit(@Param("eventId") long eventId, @Param("count") int count);
+
+    default List<Event> findAllByIdInOrder(List<Long> eventIds) {
+        Map<Long, Event> events = findAllById(eventIds).stream()
+                .collect(Collectors.toMap(Event::getId, Function.identity()));
+        return eventIds.stream()
+                .map(events::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
 }
\ No newline at end of file
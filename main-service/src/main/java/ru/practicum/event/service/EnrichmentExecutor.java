@@ -0,0 +1,69 @@
+package ru.practicum.event.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs independent lookups for event pages concurrently on a dedicated pool of {@code pool-size} threads
+ * with at most {@code queue-capacity} waiting tasks. A lookup that fails, is rejected because the pool
+ * is saturated or takes longer than {@code timeout-ms} yields its fallback value instead of failing the page.
+ */
+@Slf4j
+@Component
+public class EnrichmentExecutor implements DisposableBean {
+
+    private final ExecutorService executor;
+    private final long timeoutMs;
+
+    public EnrichmentExecutor(MeterRegistry meterRegistry,
+                              @Value("${events.enrichment.pool-size:8}") int poolSize,
+                              @Value("${events.enrichment.queue-capacity:100}") int queueCapacity,
+                              @Value("${events.enrichment.timeout-ms:500}") long timeoutMs) {
+        AtomicInteger threads = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "event-enrichment-" + threads.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        pool.allowCoreThreadTimeOut(true);
+        this.executor = ExecutorServiceMetrics.monitor(meterRegistry, pool, "event-enrichment");
+        this.timeoutMs = timeoutMs;
+    }
+
+    public <T> CompletableFuture<T> supply(String lookup, Supplier<T> supplier, T fallback) {
+        CompletableFuture<T> future;
+        try {
+            future = CompletableFuture.supplyAsync(supplier, executor);
+        } catch (RejectedExecutionException e) {
+            log.warn("Пул обогащения событий переполнен, для '{}' использовано значение по умолчанию", lookup);
+            return CompletableFuture.completedFuture(fallback);
+        }
+        return future
+                .orTimeout(timeoutMs, TimeUnit.MILLISECONDS)
+                .exceptionally(e -> {
+                    log.warn("Не удалось выполнить '{}' за {} мс, использовано значение по умолчанию: {}", lookup, timeoutMs, e.toString());
+                    return fallback;
+                });
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+}
@@ -0,0 +1,179 @@
+package ru.practicum.event.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.practicum.category.mapper.CategoryMapper;
+import ru.practicum.category.model.Category;
+import ru.practicum.category.repo.CategoryRepository;
+import ru.practicum.client.StatClient;
+import ru.practicum.event.dto.EventFullDto;
+import ru.practicum.event.dto.EventShortDto;
+import ru.practicum.event.mapper.EventMapper;
+import ru.practicum.event.model.Event;
+import ru.practicum.location.mapper.LocationMapper;
+import ru.practicum.location.model.Location;
+import ru.practicum.location.repo.LocationRepository;
+import ru.practicum.user.mapper.UserMapper;
+import ru.practicum.user.model.User;
+import ru.practicum.user.repo.UserRepository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Builds event DTOs for a whole page at once: categories, initiators, locations and views are each fetched
+ * with one query for all events of the page instead of one per event.
+ */
+@Component
+@RequiredArgsConstructor
+public class EventEnricher {
+
+    private final CategoryRepository categoryRepository;
+    private final UserRepository userRepository;
+    private final LocationRepository locationRepository;
+    private final EventMapper eventMapper;
+    private final CategoryMapper categoryMapper;
+    private final UserMapper userMapper;
+    private final LocationMapper locationMapper;
+    private final StatClient statClient;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final EnrichmentExecutor enrichmentExecutor;
+
+    public List<EventShortDto> toEventShortDtos(List<Event> events) {
+        if (events.isEmpty()) {
+            return List.of();
+        }
+        List<Long> eventIds = getIds(events, Event::getId);
+        Map<Long, Category> categories = getById(categoryRepository.findAllById(getIds(events, EventEnricher::getCategoryId)),
+                Category::getId);
+        Map<Long, User> initiators = getById(userRepository.findAllById(getIds(events, EventEnricher::getInitiatorId)),
+                User::getId);
+        Map<Long, Long> views = getViews(eventIds);
+        return events.stream()
+                .map(event -> {
+                    EventShortDto eventShortDto = eventMapper.toEventShortDtoWithoutRelations(event);
+                    eventShortDto.setCategory(categoryMapper.toCategoryDto(categories.get(getCategoryId(event))));
+                    eventShortDto.setInitiator(userMapper.toUserShortDto(initiators.get(getInitiatorId(event))));
+                    eventShortDto.setViews(views.getOrDefault(event.getId(), 0L).intValue());
+                    return eventShortDto;
+                })
+                .collect(Collectors.toList());
+    }
+
+    public List<EventFullDto> toEventFullDtos(List<Event> events) {
+        if (events.isEmpty()) {
+            return List.of();
+        }
+        List<EventFullDto> eventFullDtos = toEventFullDtosWithoutViews(events);
+        addViews(eventFullDtos);
+        return eventFullDtos;
+    }
+
+    /**
+     * Builds the detail page of one event. Views, rating and compilations are looked up concurrently
+     * on {@link EnrichmentExecutor} while relations are loaded, each falling back to an empty value if it fails or is slow.
+     */
+    public EventFullDto toEventFullDto(Event event) {
+        long eventId = event.getId();
+        LocalDateTime now = LocalDateTime.now();
+        CompletableFuture<Long> views = enrichmentExecutor.supply("просмотры события",
+                () -> statClient.fetchViews(List.of(eventId), getViewsStart(now), getViewsEnd(now), true).get(eventId),
+                0L);
+        CompletableFuture<Long> rating = enrichmentExecutor.supply("рейтинг события", () -> getRating(eventId), 0L);
+        CompletableFuture<List<Long>> compilations = enrichmentExecutor.supply("подборки события",
+                () -> getCompilationIds(eventId), List.of());
+        EventFullDto eventFullDto = toEventFullDtosWithoutViews(List.of(event)).get(0);
+        CompletableFuture.allOf(views, rating, compilations).join();
+        eventFullDto.setViews(views.join().intValue());
+        eventFullDto.setRating(rating.join());
+        eventFullDto.setCompilations(compilations.join());
+        return eventFullDto;
+    }
+
+    private List<EventFullDto> toEventFullDtosWithoutViews(List<Event> events) {
+        Map<Long, Category> categories = getById(categoryRepository.findAllById(getIds(events, EventEnricher::getCategoryId)),
+                Category::getId);
+        Map<Long, User> initiators = getById(userRepository.findAllById(getIds(events, EventEnricher::getInitiatorId)),
+                User::getId);
+        Map<Long, Location> locations = getById(locationRepository.findAllById(getIds(events, EventEnricher::getLocationId)),
+                Location::getId);
+        return events.stream()
+                .map(event -> {
+                    EventFullDto eventFullDto = eventMapper.toEventFullDtoWithoutRelations(event);
+                    eventFullDto.setCategory(categoryMapper.toCategoryDto(categories.get(getCategoryId(event))));
+                    eventFullDto.setInitiator(userMapper.toUserShortDto(initiators.get(getInitiatorId(event))));
+                    eventFullDto.setLocation(locationMapper.toLocationDto(locations.get(getLocationId(event))));
+                    return eventFullDto;
+                })
+                .collect(Collectors.toList());
+    }
+
+    public void addViews(List<EventFullDto> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        Map<Long, Long> views = getViews(events.stream()
+                .map(EventFullDto::getId)
+                .collect(Collectors.toList()));
+        events.forEach(event -> event.setViews(views.getOrDefault(event.getId(), 0L).intValue()));
+    }
+
+    private long getRating(long eventId) {
+        Long rating = namedJdbcTemplate.queryForObject("SELECT COALESCE(SUM(rating), 0) FROM PUBLIC.RATINGS WHERE event_id = :eventId",
+                new MapSqlParameterSource("eventId", eventId), Long.class);
+        return rating != null ? rating : 0;
+    }
+
+    private List<Long> getCompilationIds(long eventId) {
+        return namedJdbcTemplate.queryForList("SELECT compilation_id FROM PUBLIC.COMPILATION_EVENTS\n" +
+                        "WHERE event_id = :eventId\n" +
+                        "ORDER BY compilation_id",
+                new MapSqlParameterSource("eventId", eventId), Long.class);
+    }
+
+    private List<Long> getIds(List<Event> events, Function<Event, Long> id) {
+        return events.stream()
+                .map(id)
+                .filter(Objects::nonNull)
+                .distinct()
+                .collect(Collectors.toList());
+    }
+
+    private static Long getCategoryId(Event event) {
+        return event.getCategory() != null ? event.getCategory().getId() : null;
+    }
+
+    private static Long getInitiatorId(Event event) {
+        return event.getInitiator() != null ? event.getInitiator().getId() : null;
+    }
+
+    private static Long getLocationId(Event event) {
+        return event.getLocation() != null ? event.getLocation().getId() : null;
+    }
+
+    private <T> Map<Long, T> getById(List<T> entities, Function<T, Long> id) {
+        return entities.stream()
+                .collect(Collectors.toMap(id, Function.identity()));
+    }
+
+    private Map<Long, Long> getViews(List<Long> eventIds) {
+        LocalDateTime now = LocalDateTime.now();
+        return statClient.getViews(eventIds, getViewsStart(now), getViewsEnd(now), true);
+    }
+
+    static LocalDateTime getViewsStart(LocalDateTime now) {
+        return now.minusMonths(1);
+    }
+
+    static LocalDateTime getViewsEnd(LocalDateTime now) {
+        return now.plusMonths(1);
+    }
+
+}
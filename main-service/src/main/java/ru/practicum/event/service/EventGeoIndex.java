@@ -0,0 +1,175 @@
+package ru.practicum.event.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.practicum.event.model.Event;
+import ru.practicum.event.model.EventState;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory grid index over locations of published events. The world is split into cells of
+ * {@code cell-degrees} by {@code cell-degrees}; a search only visits cells overlapping the bounding box
+ * of the circle and checks the exact great-circle distance of the events found there.
+ */
+@Slf4j
+@Component
+public class EventGeoIndex implements InitializingBean {
+
+    private static final double EARTH_RADIUS_KM = 6371.0088;
+
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final double cellDegrees;
+    private final long columns;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Set<Long>> cells = new HashMap<>();
+    private final Map<Long, double[]> points = new HashMap<>();
+
+    public EventGeoIndex(NamedParameterJdbcTemplate namedJdbcTemplate,
+                         @Value("${events.geo.cell-degrees:0.1}") double cellDegrees) {
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.cellDegrees = cellDegrees;
+        this.columns = (long) Math.ceil(360 / cellDegrees);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        String sql = "SELECT events.id, locations.lat, locations.lon\n" +
+                "FROM PUBLIC.EVENTS AS EVENTS\n" +
+                "JOIN PUBLIC.LOCATIONS AS LOCATIONS ON LOCATIONS.ID = EVENTS.LOCATION_ID\n" +
+                "WHERE events.state = 'PUBLISHED'";
+        namedJdbcTemplate.query(sql, new MapSqlParameterSource(), rs -> {
+            add(rs.getLong("id"), rs.getDouble("lat"), rs.getDouble("lon"));
+        });
+        log.info("Построен географический индекс по {} опубликованным событиям", points.size());
+    }
+
+    public void update(Event event) {
+        if (event.getState() == EventState.PUBLISHED && event.getLocation() != null) {
+            add(event.getId(), event.getLocation().getLat(), event.getLocation().getLon());
+        } else {
+            remove(event.getId());
+        }
+    }
+
+    /**
+     * Returns ids of published events within {@code radius} kilometres of the point, nearest first.
+     */
+    public List<Long> search(double lat, double lon, double radius) {
+        double angle = radius / EARTH_RADIUS_KM;
+        double latDelta = Math.toDegrees(angle);
+        boolean allColumns = Math.abs(lat) + latDelta >= 90 || angle >= Math.PI / 2;
+        double lonDelta = allColumns ? 180 : Math.toDegrees(Math.asin(Math.sin(angle) / Math.cos(Math.toRadians(lat))));
+        long minRow = getRow(Math.max(lat - latDelta, -90));
+        long maxRow = getRow(Math.min(lat + latDelta, 90));
+        long minColumn = allColumns ? 0 : getColumn(lon - lonDelta);
+        long maxColumn = allColumns ? columns - 1 : getColumn(lon + lonDelta);
+        long visitedColumns = Math.floorMod(maxColumn - minColumn, columns) + 1;
+        Map<Long, Double> distances = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            if ((maxRow - minRow + 1) * visitedColumns > points.size()) {
+                addWithin(points.keySet(), lat, lon, radius, distances);
+            } else {
+                for (long row = minRow; row <= maxRow; row++) {
+                    for (long i = 0; i < visitedColumns; i++) {
+                        Set<Long> eventIds = cells.get(getCell(row, (minColumn + i) % columns));
+                        if (eventIds != null) {
+                            addWithin(eventIds, lat, lon, radius, distances);
+                        }
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return distances.entrySet().stream()
+                .sorted(Map.Entry.<Long, Double>comparingByValue()
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+    }
+
+    private void addWithin(Collection<Long> eventIds, double lat, double lon, double radius, Map<Long, Double> distances) {
+        for (Long eventId : eventIds) {
+            double[] point = points.get(eventId);
+            double distance = getDistance(lat, lon, point[0], point[1]);
+            if (distance <= radius) {
+                distances.put(eventId, distance);
+            }
+        }
+    }
+
+    private void add(long eventId, double lat, double lon) {
+        lock.writeLock().lock();
+        try {
+            removePoint(eventId);
+            points.put(eventId, new double[]{lat, lon});
+            cells.computeIfAbsent(getCell(lat, lon), cell -> new HashSet<>()).add(eventId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void remove(long eventId) {
+        lock.writeLock().lock();
+        try {
+            removePoint(eventId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void removePoint(long eventId) {
+        double[] point = points.remove(eventId);
+        if (point == null) {
+            return;
+        }
+        long cell = getCell(point[0], point[1]);
+        Set<Long> eventIds = cells.get(cell);
+        if (eventIds != null) {
+            eventIds.remove(eventId);
+            if (eventIds.isEmpty()) {
+                cells.remove(cell);
+            }
+        }
+    }
+
+    private long getCell(double lat, double lon) {
+        return getCell(getRow(lat), getColumn(lon));
+    }
+
+    private long getCell(long row, long column) {
+        return (row << 32) | column;
+    }
+
+    private long getRow(double lat) {
+        return (long) Math.floor((lat + 90) / cellDegrees);
+    }
+
+    private long getColumn(double lon) {
+        double normalized = ((lon + 180) % 360 + 360) % 360;
+        return Math.min((long) Math.floor(normalized / cellDegrees), columns - 1);
+    }
+
+    private static double getDistance(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) +
+                Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+}
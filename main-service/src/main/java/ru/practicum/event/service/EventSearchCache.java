@@ -0,0 +1,101 @@
+package ru.practicum.event.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.event.dto.EventShortDto;
+import ru.practicum.event.model.EventSearchCacheKey;
+import ru.practicum.event.model.EventSearchQuery;
+import ru.practicum.util.CursorPage;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Size-bounded cache of public event searches keyed by the normalized filters and page.
+ * Every change of an event bumps the version of its category and the global version. Searches filtered by
+ * categories are keyed by the versions of those categories, other searches by the global version, so only
+ * entries that may include the changed event stop being found; they age out by size or after {@code ttl-ms}.
+ * Views and the default "upcoming events" date range are not tracked and may lag by up to {@code ttl-ms}.
+ */
+@Component
+public class EventSearchCache {
+
+    private final boolean enabled;
+    private final Cache<EventSearchCacheKey, CursorPage<EventShortDto>> cache;
+    private final AtomicLong globalVersion = new AtomicLong();
+    private final Map<Long, AtomicLong> categoryVersions = new ConcurrentHashMap<>();
+
+    public EventSearchCache(MeterRegistry meterRegistry,
+                            @Value("${events.cache.enabled:true}") boolean enabled,
+                            @Value("${events.cache.max-size:1000}") long maxSize,
+                            @Value("${events.cache.ttl-ms:10000}") long ttlMs) {
+        this.enabled = enabled;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(ttlMs))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "events");
+        Gauge.builder("events.cache.hit.ratio", cache, c -> c.stats().hitRate())
+                .description("Share of public event searches answered from the result cache")
+                .register(meterRegistry);
+    }
+
+    public CursorPage<EventShortDto> get(EventSearchQuery query, Function<EventSearchQuery, CursorPage<EventShortDto>> loader) {
+        if (!enabled) {
+            return loader.apply(query);
+        }
+        return cache.get(new EventSearchCacheKey(query, getVersions(query)), key -> loader.apply(query));
+    }
+
+    public void invalidate(Collection<Long> categoryIds) {
+        if (!enabled) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    bumpVersions(categoryIds);
+                }
+            });
+        } else {
+            bumpVersions(categoryIds);
+        }
+    }
+
+    private void bumpVersions(Collection<Long> categoryIds) {
+        globalVersion.incrementAndGet();
+        categoryIds.stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .forEach(categoryId -> categoryVersions.computeIfAbsent(categoryId, key -> new AtomicLong()).incrementAndGet());
+    }
+
+    private List<Long> getVersions(EventSearchQuery query) {
+        if (query.getCategories() == null) {
+            return List.of(globalVersion.get());
+        }
+        return query.getCategories().stream()
+                .map(categoryId -> {
+                    AtomicLong version = categoryVersions.get(categoryId);
+                    return version == null ? 0L : version.get();
+                })
+                .collect(Collectors.toList());
+    }
+
+}
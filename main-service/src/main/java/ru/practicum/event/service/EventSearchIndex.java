@@ -0,0 +1,175 @@
+package ru.practicum.event.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.practicum.event.model.Event;
+import ru.practicum.event.model.EventState;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory trigram index over title, annotation and description of published events.
+ * Text is case-folded and every character that is not a letter or digit becomes a space, so any event
+ * containing the searched text as a substring is found; callers still have to check the match exactly.
+ * Results are ranked by the fields that match (title over annotation over description),
+ * with a bonus for fields where a word starts with the searched text.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class EventSearchIndex implements InitializingBean {
+
+    private static final int GRAM = 3;
+    private static final int[] FIELD_WEIGHTS = {6, 4, 2};
+    private static final int WORD_START_BONUS = 1;
+
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<Map<String, Set<Long>>> postings = List.of(new HashMap<>(), new HashMap<>(), new HashMap<>());
+    private final Map<Long, List<Set<String>>> documents = new HashMap<>();
+
+    @Override
+    public void afterPropertiesSet() {
+        String sql = "SELECT id, title, annotation, description\n" +
+                "FROM PUBLIC.EVENTS\n" +
+                "WHERE state = 'PUBLISHED'";
+        namedJdbcTemplate.query(sql, new MapSqlParameterSource(), rs -> {
+            add(rs.getLong("id"), rs.getString("title"), rs.getString("annotation"), rs.getString("description"));
+        });
+        log.info("Построен поисковый индекс по {} опубликованным событиям", documents.size());
+    }
+
+    public void update(Event event) {
+        if (event.getState() == EventState.PUBLISHED) {
+            add(event.getId(), event.getTitle(), event.getAnnotation(), event.getDescription());
+        } else {
+            remove(event.getId());
+        }
+    }
+
+    /**
+     * Returns ids of published events that may contain {@code text}, most relevant first,
+     * or null if the text is too short to be looked up in the index.
+     */
+    public List<Long> search(String text) {
+        String query = normalize(text).trim();
+        if (query.length() < GRAM) {
+            return null;
+        }
+        Set<String> grams = getGrams(query);
+        Set<String> wordStartGrams = getGrams(" " + query);
+        Map<Long, Integer> scores = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            for (int field = 0; field < FIELD_WEIGHTS.length; field++) {
+                int weight = FIELD_WEIGHTS[field];
+                Set<Long> matches = intersect(postings.get(field), grams);
+                Set<Long> wordStarts = intersect(postings.get(field), wordStartGrams);
+                for (Long eventId : matches) {
+                    scores.merge(eventId, weight + (wordStarts.contains(eventId) ? WORD_START_BONUS : 0), Integer::sum);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return scores.entrySet().stream()
+                .sorted(Map.Entry.<Long, Integer>comparingByValue(Comparator.reverseOrder())
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+    }
+
+    private void add(long eventId, String... fields) {
+        List<Set<String>> document = new ArrayList<>();
+        for (String field : fields) {
+            document.add(field == null ? Set.of() : getGrams(" " + normalize(field) + " "));
+        }
+        lock.writeLock().lock();
+        try {
+            removeDocument(eventId);
+            for (int field = 0; field < document.size(); field++) {
+                for (String gram : document.get(field)) {
+                    postings.get(field).computeIfAbsent(gram, g -> new HashSet<>()).add(eventId);
+                }
+            }
+            documents.put(eventId, document);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void remove(long eventId) {
+        lock.writeLock().lock();
+        try {
+            removeDocument(eventId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void removeDocument(long eventId) {
+        List<Set<String>> document = documents.remove(eventId);
+        if (document == null) {
+            return;
+        }
+        for (int field = 0; field < document.size(); field++) {
+            Map<String, Set<Long>> fieldPostings = postings.get(field);
+            for (String gram : document.get(field)) {
+                Set<Long> eventIds = fieldPostings.get(gram);
+                if (eventIds != null) {
+                    eventIds.remove(eventId);
+                    if (eventIds.isEmpty()) {
+                        fieldPostings.remove(gram);
+                    }
+                }
+            }
+        }
+    }
+
+    private static Set<Long> intersect(Map<String, Set<Long>> fieldPostings, Set<String> grams) {
+        List<Set<Long>> lists = new ArrayList<>();
+        for (String gram : grams) {
+            Set<Long> eventIds = fieldPostings.get(gram);
+            if (eventIds == null) {
+                return Set.of();
+            }
+            lists.add(eventIds);
+        }
+        lists.sort(Comparator.comparingInt(Set::size));
+        Set<Long> result = new HashSet<>(lists.get(0));
+        for (int i = 1; i < lists.size() && !result.isEmpty(); i++) {
+            result.retainAll(lists.get(i));
+        }
+        return result;
+    }
+
+    private static Set<String> getGrams(String text) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            grams.add(text.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+
+    private static String normalize(String text) {
+        char[] chars = text.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.isLetterOrDigit(chars[i]) ? Character.toLowerCase(chars[i]) : ' ';
+        }
+        return new String(chars);
+    }
+
+}
@@ -4,31 +4,37 @@ import ru.practicum.event.dto.*;
 import ru.practicum.request.dto.EventRequestStatusUpdateRequest;
 import ru.practicum.request.dto.EventRequestStatusUpdateResult;
 import ru.practicum.request.dto.ParticipationRequestDto;
+import ru.practicum.util.CursorPage;
 
 import java.time.LocalDateTime;
 import java.util.List;
 
 public interface EventService {
 
-    List<EventShortDto> getAll(String text,
-                               List<Long> categories,
-                               Boolean paid,
-                               LocalDateTime rangeStart,
-                               LocalDateTime rangeEnd,
-                               Boolean onlyAvailable,
-                               String sort,
-                               Integer from,
-                               Integer size);
+    CursorPage<EventShortDto> getAll(String text,
+                                     List<Long> categories,
+                                     Boolean paid,
+                                     LocalDateTime rangeStart,
+                                     LocalDateTime rangeEnd,
+                                     Boolean onlyAvailable,
+                                     Double lat,
+                                     Double lon,
+                                     Double radius,
+                                     String sort,
+                                     String after,
+                                     Integer from,
+                                     Integer size);
 
     EventFullDto find(long id);
 
-    List<EventFullDto> getAdminAll(List<Long> users,
-                                   List<String> states,
-                                   List<Long> categories,
-                                   LocalDateTime rangeStart,
-                                   LocalDateTime rangeEnd,
-                                   int from,
-                                   int size);
+    CursorPage<EventFullDto> getAdminAll(List<Long> users,
+                                         List<String> states,
+                                         List<Long> categories,
+                                         LocalDateTime rangeStart,
+                                         LocalDateTime rangeEnd,
+                                         String after,
+                                         int from,
+                                         int size);
 
     EventFullDto updateAdmin(long eventId, UpdateEventAdminRequest updateRequest);
 
@@ -3,22 +3,23 @@ package ru.practicum.event.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.http.ResponseEntity;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Service;
-import ru.practicum.category.mapper.CategoryMapper;
+import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.category.model.Category;
+import ru.practicum.category.dto.CategoryDto;
 import ru.practicum.category.repo.CategoryRepository;
-import ru.practicum.client.StatClient;
 import ru.practicum.event.dto.*;
 import ru.practicum.event.mapper.EventMapper;
 import ru.practicum.event.model.Event;
+import ru.practicum.event.model.EventSearchQuery;
 import ru.practicum.event.model.EventState;
 import ru.practicum.event.repo.EventRepository;
 import ru.practicum.exception.ConflictException;
 import ru.practicum.exception.NotFoundException;
 import ru.practicum.exception.ValidationException;
+import ru.practicum.location.dto.LocationDto;
 import ru.practicum.location.mapper.LocationMapper;
 import ru.practicum.request.dto.EventRequestStatusUpdateRequest;
 import ru.practicum.request.dto.EventRequestStatusUpdateResult;
@@ -27,12 +28,18 @@ import ru.practicum.request.mapper.RequestMapper;
 import ru.practicum.request.model.Request;
 import ru.practicum.request.model.RequestStatus;
 import ru.practicum.request.repo.RequestRepository;
-import ru.practicum.user.mapper.UserMapper;
+import ru.practicum.request.service.ParticipationPermits;
+import ru.practicum.request.service.RushQueue;
+import ru.practicum.request.service.WaitlistPromoter;
+import ru.practicum.user.dto.UserShortDto;
 import ru.practicum.user.model.User;
 import ru.practicum.user.repo.UserRepository;
+import ru.practicum.util.Cursor;
+import ru.practicum.util.CursorPage;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
@@ -44,28 +51,42 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class EventServiceImpl implements EventService {
 
+    private static final String EVENT_DATE_ORDER = "EVENT_DATE";
+    private static final String VIEWS_ORDER = "VIEWS";
+    private static final String RELEVANCE_ORDER = "RELEVANCE";
+    private static final String DISTANCE_ORDER = "DISTANCE";
+
     private final EventRepository eventRepository;
     private final CategoryRepository categoryRepository;
     private final UserRepository userRepository;
     private final RequestRepository requestRepository;
     private final EventMapper eventMapper;
-    private final CategoryMapper categoryMapper;
-    private final UserMapper userMapper;
     private final LocationMapper locationMapper;
     private final RequestMapper requestMapper;
     private final NamedParameterJdbcTemplate namedJdbcTemplate;
-    private final StatClient statClient;
+    private final EventEnricher eventEnricher;
+    private final EventViewsSync eventViewsSync;
+    private final EventSearchIndex eventSearchIndex;
+    private final EventGeoIndex eventGeoIndex;
+    private final EventSearchCache eventSearchCache;
+    private final ParticipationPermits participationPermits;
+    private final RushQueue rushQueue;
+    private final WaitlistPromoter waitlistPromoter;
 
     @Override
-    public List<EventShortDto> getAll(String text,
-                                      List<Long> categories,
-                                      Boolean paid,
-                                      LocalDateTime rangeStart,
-                                      LocalDateTime rangeEnd,
-                                      Boolean onlyAvailable,
-                                      String sort,
-                                      Integer from,
-                                      Integer size) {
+    public CursorPage<EventShortDto> getAll(String text,
+                                            List<Long> categories,
+                                            Boolean paid,
+                                            LocalDateTime rangeStart,
+                                            LocalDateTime rangeEnd,
+                                            Boolean onlyAvailable,
+                                            Double lat,
+                                            Double lon,
+                                            Double radius,
+                                            String sort,
+                                            String after,
+                                            Integer from,
+                                            Integer size) {
         validateSearchParameters(from, size);
         if (categories != null) {
             for (Long categoryId : categories) {
@@ -75,59 +96,175 @@ public class EventServiceImpl implements EventService {
                 }
             }
         }
-        String sql = "SELECT *\n" +
-                "FROM PUBLIC.EVENTS AS EVENTS\n" +
-                "LEFT JOIN\n" +
-                "\t(SELECT REQ.EVENT_ID AS EVENT_ID,\n" +
-                "\t\t\tCOUNT(REQ.ID) AS AMOUNT\n" +
-                "\t\tFROM PUBLIC.REQUESTS AS REQ\n" +
-                "\t\tWHERE REQ.STATUS = 'CONFIRMED'\n" +
-                "\t\tGROUP BY REQ.EVENT_ID) AS REQUESTS ON (EVENTS.ID = REQUESTS.EVENT_ID\n" +
-                "AND EVENTS.PARTICIPANT_LIMIT >= REQUESTS.AMOUNT)\n" +
-                "WHERE STATE = 'PUBLISHED'";
+        validateNearby(lat, lon, radius);
+        boolean hasRange = rangeStart != null && rangeEnd != null;
+        EventSearchQuery query = new EventSearchQuery(text != null && !text.isBlank() ? text : null,
+                categories != null && !categories.isEmpty() ? categories.stream().distinct().sorted().collect(Collectors.toList()) : null,
+                paid,
+                hasRange ? rangeStart : null,
+                hasRange ? rangeEnd : null,
+                onlyAvailable != null && onlyAvailable,
+                lat,
+                lon,
+                radius,
+                EVENT_DATE_ORDER.equals(sort) || VIEWS_ORDER.equals(sort) ? sort : null,
+                after,
+                after != null ? 0 : from,
+                size);
+        return eventSearchCache.get(query, this::search);
+    }
+
+    private void validateNearby(Double lat, Double lon, Double radius) {
+        if (lat == null && lon == null && radius == null) {
+            return;
+        }
+        if (lat == null || lon == null || radius == null) {
+            log.info("Для поиска событий рядом с точкой нужно указать lat, lon и radius, указано lat={}, lon={}, radius={}",
+                    lat, lon, radius);
+            throw new ValidationException();
+        }
+        if (lat < -90 || lat > 90 || lon < -180 || lon > 180) {
+            log.info("Указаны неверные координаты точки lat={}, lon={}", lat, lon);
+            throw new ValidationException();
+        }
+        if (radius <= 0) {
+            log.info("Параметр запроса 'radius' должен быть больше 0, указано значение {}", radius);
+            throw new ValidationException();
+        }
+    }
+
+    private CursorPage<EventShortDto> search(EventSearchQuery query) {
+        String text = query.getText();
+        List<Long> categories = query.getCategories();
+        List<Long> rankedIds = null;
+        if (text != null) {
+            rankedIds = eventSearchIndex.search(text);
+            if (rankedIds != null && rankedIds.isEmpty()) {
+                log.info("Не найдены события по тексту {}", text);
+                return new CursorPage<>(List.of(), null);
+            }
+        }
+        boolean nearby = query.getLat() != null;
+        if (nearby) {
+            List<Long> nearbyIds = eventGeoIndex.search(query.getLat(), query.getLon(), query.getRadius());
+            if (rankedIds != null) {
+                Set<Long> matchingIds = new HashSet<>(rankedIds);
+                nearbyIds = nearbyIds.stream()
+                        .filter(matchingIds::contains)
+                        .collect(Collectors.toList());
+            }
+            if (nearbyIds.isEmpty()) {
+                log.info("Не найдены события в радиусе {} км от точки lat={}, lon={}",
+                        query.getRadius(), query.getLat(), query.getLon());
+                return new CursorPage<>(List.of(), null);
+            }
+            rankedIds = nearbyIds;
+        }
+        String order = getOrder(query.getSort(), rankedIds != null, nearby);
+        Cursor afterCursor = query.getAfter() != null ? Cursor.decode(query.getAfter(), order) : null;
+        String sql = "SELECT EVENTS.ID, EVENTS.EVENT_DATE, EVENTS.VIEWS" + (rankedIds != null ? ", RANKED.POSITION" : "") + "\n" +
+                "FROM PUBLIC.EVENTS AS EVENTS\n";
         MapSqlParameterSource parameters = new MapSqlParameterSource();
-        if (text != null && !text.isBlank()) {
+        if (rankedIds != null) {
+            sql += "JOIN UNNEST(CAST(:rankedIds AS BIGINT[])) WITH ORDINALITY AS RANKED (ID, POSITION) ON RANKED.ID = EVENTS.ID\n";
+            parameters.addValue("rankedIds", rankedIds.toArray(new Long[0]));
+        }
+        sql += "WHERE STATE = 'PUBLISHED'";
+        if (text != null) {
             sql += " AND ((UPPER(events.annotation) LIKE UPPER(CONCAT('%', :text, '%')))" +
-                    "OR (UPPER(events.description) LIKE UPPER(CONCAT('%', :text, '%'))))";
+                    "OR (UPPER(events.description) LIKE UPPER(CONCAT('%', :text, '%')))" +
+                    "OR (UPPER(events.title) LIKE UPPER(CONCAT('%', :text, '%'))))";
             parameters.addValue("text", text);
         }
-        if (categories != null && !categories.isEmpty()) {
+        if (categories != null) {
             sql += " AND (events.category_id IN (:categories))";
             parameters.addValue("categories", categories);
         }
-        if (paid != null) {
+        if (query.getPaid() != null) {
             sql += " AND (events.paid = :paid)";
-            parameters.addValue("paid", paid);
+            parameters.addValue("paid", query.getPaid());
         }
-        if (rangeStart != null && rangeEnd != null) {
+        if (query.getRangeStart() != null) {
             sql += " AND (events.event_date >= :start AND events.event_date <= :end)";
-            parameters.addValue("start", rangeStart);
-            parameters.addValue("end", rangeEnd);
+            parameters.addValue("start", query.getRangeStart());
+            parameters.addValue("end", query.getRangeEnd());
         } else {
             sql += " AND (events.event_date >= :now)";
             parameters.addValue("now", LocalDateTime.now());
         }
-        if (onlyAvailable != null && onlyAvailable) {
-            sql += " AND (requests.amount IS NOT NULL)";
+        if (query.isOnlyAvailable()) {
+            sql += " AND (events.participant_limit = 0 OR events.confirmed_requests < events.participant_limit)";
         }
-        sql += " LIMIT " + size + " OFFSET " + from;
-        List<EventShortDto> events = namedJdbcTemplate.query(sql, parameters, (rs, rowNum) -> createEventShort(rs));
-        if (sort != null) {
-            switch (sort) {
-                case "EVENT_DATE":
-                    events = events.stream()
-                            .sorted(Comparator.comparing(EventShortDto::getEventDate))
-                            .collect(Collectors.toList());
+        if (afterCursor != null) {
+            parameters.addValue("afterId", afterCursor.getId());
+            switch (order) {
+                case EVENT_DATE_ORDER:
+                    sql += " AND ((events.event_date, events.id) > (:afterKey, :afterId))";
+                    parameters.addValue("afterKey", afterCursor.getDateKey());
                     break;
-                case "VIEWS":
-                    events = events.stream()
-                            .sorted(Comparator.comparing(EventShortDto::getViews))
-                            .collect(Collectors.toList());
+                case VIEWS_ORDER:
+                    sql += " AND (events.views < :afterKey OR (events.views = :afterKey AND events.id > :afterId))";
+                    parameters.addValue("afterKey", afterCursor.getLongKey());
                     break;
+                case RELEVANCE_ORDER:
+                case DISTANCE_ORDER:
+                    sql += " AND (ranked.position > :afterKey)";
+                    parameters.addValue("afterKey", afterCursor.getLongKey());
+                    break;
+                default:
+                    sql += " AND (events.id > :afterId)";
             }
         }
+        switch (order) {
+            case EVENT_DATE_ORDER:
+                sql += " ORDER BY events.event_date, events.id";
+                break;
+            case VIEWS_ORDER:
+                sql += " ORDER BY events.views DESC, events.id";
+                break;
+            case RELEVANCE_ORDER:
+            case DISTANCE_ORDER:
+                sql += " ORDER BY ranked.position";
+                break;
+            default:
+                sql += " ORDER BY events.id";
+        }
+        sql += " LIMIT " + query.getSize();
+        if (afterCursor == null) {
+            sql += " OFFSET " + query.getFrom();
+        }
+        List<Cursor> rows = namedJdbcTemplate.query(sql, parameters, (rs, rowNum) ->
+                Cursor.of(order, getSortKey(order, rs), rs.getLong("id")));
+        List<Long> eventIds = rows.stream()
+                .map(Cursor::getId)
+                .collect(Collectors.toList());
+        List<EventShortDto> events = eventEnricher.toEventShortDtos(eventRepository.findAllByIdInOrder(eventIds));
         log.info("Найдены события {}", events);
-        return events;
+        return new CursorPage<>(events, rows.size() < query.getSize() ? null : rows.get(rows.size() - 1));
+    }
+
+    private static String getOrder(String sort, boolean ranked, boolean nearby) {
+        if (sort != null) {
+            return sort;
+        }
+        if (nearby) {
+            return DISTANCE_ORDER;
+        }
+        return ranked ? RELEVANCE_ORDER : Cursor.ID_SORT;
+    }
+
+    private static Object getSortKey(String order, ResultSet rs) throws SQLException {
+        switch (order) {
+            case EVENT_DATE_ORDER:
+                return rs.getTimestamp("event_date").toLocalDateTime();
+            case VIEWS_ORDER:
+                return rs.getLong("views");
+            case RELEVANCE_ORDER:
+            case DISTANCE_ORDER:
+                return rs.getLong("position");
+            default:
+                return null;
+        }
     }
 
     private void validateSearchParameters(int from, int size) {
@@ -140,23 +277,6 @@ public class EventServiceImpl implements EventService {
         }
     }
 
-    private EventShortDto createEventShort(ResultSet rs) throws SQLException {
-        long id = rs.getLong("id");
-        LocalDateTime eventDate = LocalDateTime.parse(rs.getString("event_date"),
-                DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
-        return EventShortDto.builder()
-                .id(id)
-                .annotation(rs.getString("annotation"))
-                .category(categoryMapper.toCategoryDto(findCategory(rs.getLong("category_id"))))
-                .confirmedRequests(rs.getInt("amount"))
-                .eventDate(eventDate)
-                .initiator(userMapper.toUserShortDto(findUser(rs.getLong("initiator_id"))))
-                .paid(rs.getBoolean("paid"))
-                .title(rs.getString("title"))
-                .views(getNumberViews(id))
-                .build();
-    }
-
     @Override
     public EventFullDto find(long id) {
         Event event = findEvent(id);
@@ -164,9 +284,8 @@ public class EventServiceImpl implements EventService {
             log.info("Событие {} не опубликовано", event);
             throw new NotFoundException();
         }
-        EventFullDto eventFullDto = eventMapper.toEventFullDto(event);
-        eventFullDto.setViews(getNumberViews(id));
-        eventFullDto.setConfirmedRequests(getNumberConfirmedRequests(event));
+        eventViewsSync.markViewed(id);
+        EventFullDto eventFullDto = eventEnricher.toEventFullDto(event);
         log.info("Найдено событие {}", eventFullDto);
         return eventFullDto;
     }
@@ -185,65 +304,97 @@ public class EventServiceImpl implements EventService {
     }
 
     @Override
-    public List<EventFullDto> getAdminAll(List<Long> users,
-                                          List<String> states,
-                                          List<Long> categories,
-                                          LocalDateTime rangeStart,
-                                          LocalDateTime rangeEnd,
-                                          int from,
-                                          int size) {
+    public CursorPage<EventFullDto> getAdminAll(List<Long> users,
+                                                List<String> states,
+                                                List<Long> categories,
+                                                LocalDateTime rangeStart,
+                                                LocalDateTime rangeEnd,
+                                                String after,
+                                                int from,
+                                                int size) {
         validateSearchParameters(from, size);
-        List<EventState> eventStates = new ArrayList<>();
-        if (states != null) {
+        String sql = "SELECT EVENTS.*, CATEGORIES.NAME AS CATEGORY_NAME, USERS.NAME AS INITIATOR_NAME, LOCATIONS.LAT, LOCATIONS.LON\n" +
+                "FROM PUBLIC.EVENTS AS EVENTS\n" +
+                "LEFT JOIN PUBLIC.CATEGORIES AS CATEGORIES ON CATEGORIES.ID = EVENTS.CATEGORY_ID\n" +
+                "LEFT JOIN PUBLIC.USERS AS USERS ON USERS.ID = EVENTS.INITIATOR_ID\n" +
+                "LEFT JOIN PUBLIC.LOCATIONS AS LOCATIONS ON LOCATIONS.ID = EVENTS.LOCATION_ID\n" +
+                "WHERE TRUE";
+        MapSqlParameterSource parameters = new MapSqlParameterSource();
+        if (users != null && !users.isEmpty()) {
+            sql += " AND (events.initiator_id IN (:users))";
+            parameters.addValue("users", users);
+        }
+        if (states != null && !states.isEmpty()) {
             for (String state : states) {
-                EventState eventState = EventState.valueOf(state);
-                eventStates.add(eventState);
+                if (Arrays.stream(EventState.values()).noneMatch(eventState -> eventState.name().equals(state))) {
+                    log.info("В запросе на поиск событий указано неизвестное состояние события {}", state);
+                    throw new ValidationException();
+                }
             }
+            sql += " AND (events.state IN (:states))";
+            parameters.addValue("states", states);
         }
-        List<EventFullDto> eventsFullDto = new ArrayList<>();
-        List<Event> events;
-        if (users == null) {
-            events = eventRepository.findAll(PageRequest.of(from, size)).getContent();
-        } else {
-            events = eventRepository.findAllByInitiatorIdInAndStateInAndCategoryIdInAndEventDateIsAfterAndEventDateIsBefore(
-                    users,
-                    eventStates,
-                    categories,
-                    rangeStart,
-                    rangeEnd,
-                    PageRequest.of(from, size));
-        }
-        log.info("Получены события {}", events);
-        for (Event event : events) {
-            EventFullDto eventFullDto = eventMapper.toEventFullDto(event);
-            eventFullDto.setViews(getNumberViews(event.getId()));
-            eventFullDto.setConfirmedRequests(getNumberConfirmedRequests(event));
-            eventsFullDto.add(eventFullDto);
-        }
-        log.info("Найдены представления событий {}", eventsFullDto);
-        return eventsFullDto;
-    }
-
-    private int getNumberViews(long eventId) {
-        String[] uris = {"/events/" + eventId};
-        String startDate = LocalDateTime.now().minusMonths(1).format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
-        String endDate = LocalDateTime.now().plusMonths(1).format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
-        ResponseEntity<Object> stats = statClient.getStats(startDate, endDate, uris, true);
-        int views = 0;
-        if (stats.hasBody()) {
-            List<HashMap<String, Object>> body = (List<HashMap<String, Object>>) stats.getBody();
-            if (body != null && !body.isEmpty()) {
-                HashMap<String, Object> map = body.get(0);
-                views = (int) map.get("hits");
-            }
+        if (categories != null && !categories.isEmpty()) {
+            sql += " AND (events.category_id IN (:categories))";
+            parameters.addValue("categories", categories);
+        }
+        if (rangeStart != null) {
+            sql += " AND (events.event_date >= :start)";
+            parameters.addValue("start", rangeStart);
+        }
+        if (rangeEnd != null) {
+            sql += " AND (events.event_date <= :end)";
+            parameters.addValue("end", rangeEnd);
+        }
+        if (after != null) {
+            sql += " AND (events.id > :afterId)";
+            parameters.addValue("afterId", Cursor.decode(after, Cursor.ID_SORT).getId());
+        }
+        sql += " ORDER BY events.id LIMIT " + size;
+        if (after == null) {
+            // from is a page number here, as in the other admin listings
+            sql += " OFFSET " + (long) from * size;
         }
-        return views;
+        List<EventFullDto> events = namedJdbcTemplate.query(sql, parameters, (rs, rowNum) -> toEventFullDto(rs));
+        eventEnricher.addViews(events);
+        log.info("Найдены представления событий {}", events);
+        return CursorPage.of(events, size, event -> Cursor.ofId(event.getId()));
     }
 
-    private int getNumberConfirmedRequests(Event event) {
-        return (int) event.getRequests().stream()
-                .filter(request -> request.getStatus().equals(RequestStatus.CONFIRMED))
-                .count();
+    private static EventFullDto toEventFullDto(ResultSet rs) throws SQLException {
+        Long categoryId = rs.getObject("category_id", Long.class);
+        Long locationId = rs.getObject("location_id", Long.class);
+        Timestamp creationDate = rs.getTimestamp("creation_date");
+        Timestamp eventDate = rs.getTimestamp("event_date");
+        Timestamp publishedDate = rs.getTimestamp("published_date");
+        String state = rs.getString("state");
+        return EventFullDto.builder()
+                .id(rs.getLong("id"))
+                .annotation(rs.getString("annotation"))
+                .category(categoryId == null ? null : CategoryDto.builder()
+                        .id(categoryId)
+                        .name(rs.getString("category_name"))
+                        .build())
+                .confirmedRequests(rs.getInt("confirmed_requests"))
+                .createdOn(creationDate == null ? null : creationDate.toLocalDateTime())
+                .description(rs.getString("description"))
+                .eventDate(eventDate == null ? null : eventDate.toLocalDateTime())
+                .initiator(UserShortDto.builder()
+                        .id(rs.getLong("initiator_id"))
+                        .name(rs.getString("initiator_name"))
+                        .build())
+                .location(locationId == null ? null : LocationDto.builder()
+                        .lat(rs.getFloat("lat"))
+                        .lon(rs.getFloat("lon"))
+                        .build())
+                .paid(rs.getObject("paid", Boolean.class))
+                .participantLimit(rs.getObject("participant_limit", Integer.class))
+                .publishedOn(publishedDate == null ? null : publishedDate.toLocalDateTime())
+                .requestModeration(rs.getObject("request_moderation", Boolean.class))
+                .rushMode(rs.getObject("rush_mode", Boolean.class))
+                .state(state == null ? null : EventState.valueOf(state))
+                .title(rs.getString("title"))
+                .build();
     }
 
     @Override
@@ -253,6 +404,7 @@ public class EventServiceImpl implements EventService {
             log.info("Не указаны поля для обновления события. Тело запроса пустое");
             return eventMapper.toEventFullDto(event);
         }
+        Long categoryId = event.getCategory().getId();
         String stateAction = updateRequest.getStateAction();
         if (stateAction != null) {
             if (!event.getState().equals(EventState.PENDING)) {
@@ -309,6 +461,9 @@ public class EventServiceImpl implements EventService {
         if (updateRequest.getParticipantLimit() != null) {
             event.setParticipantLimit(updateRequest.getParticipantLimit());
         }
+        if (updateRequest.getRushMode() != null) {
+            event.setRushMode(updateRequest.getRushMode());
+        }
         if (updateRequest.getPaid() != null) {
             event.setPaid(updateRequest.getPaid());
         }
@@ -345,6 +500,12 @@ public class EventServiceImpl implements EventService {
             event.setAnnotation(updateRequest.getAnnotation());
         }
         Event updatedEvent = eventRepository.save(event);
+        eventSearchIndex.update(updatedEvent);
+        eventGeoIndex.update(updatedEvent);
+        rushQueue.update(updatedEvent);
+        eventSearchCache.invalidate(List.of(categoryId, updatedEvent.getCategory().getId()));
+        participationPermits.invalidate(eventId);
+        waitlistPromoter.mark(eventId);
         log.info("Обновлено событие {} на основании запроса администратора {}", updatedEvent, updateRequest);
         return eventMapper.toEventFullDto(updatedEvent);
     }
@@ -367,9 +528,7 @@ public class EventServiceImpl implements EventService {
         User initiator = findUser(userId);
         List<Event> userEvents = eventRepository.findAllByInitiator(initiator, PageRequest.of(from, size));
         log.info("Найдены события {} пользователя {}", userEvents, initiator);
-        return userEvents.stream()
-                .map(eventMapper::toEventShortDto)
-                .collect(Collectors.toList());
+        return eventEnricher.toEventShortDtos(userEvents);
     }
 
     private User findUser(long userId) {
@@ -402,6 +561,7 @@ public class EventServiceImpl implements EventService {
         if (newEvent.getParticipantLimit() == null) {
             newEvent.setParticipantLimit(0);
         }
+        newEvent.setRushMode(false);
         LocalDateTime eventDate = newEvent.getEventDate();
         if (eventDate != null) {
             if (eventDate.isBefore(LocalDateTime.now())) {
@@ -417,6 +577,8 @@ public class EventServiceImpl implements EventService {
             }
         }
         Event savedEvent = eventRepository.save(newEvent);
+        eventSearchIndex.update(savedEvent);
+        eventGeoIndex.update(savedEvent);
         log.info("Добавлено новое событие {} от пользователя {}", savedEvent, initiator);
         return eventMapper.toEventFullDto(newEvent);
     }
@@ -497,6 +659,7 @@ public class EventServiceImpl implements EventService {
             log.info("Не указаны поля для обновления события. Тело запроса пустое");
             return eventMapper.toEventFullDto(event);
         }
+        Long categoryId = event.getCategory().getId();
         if (updateRequest.getAnnotation() != null) {
             if (updateRequest.getAnnotation().length() < 20) {
                 log.info("В запросе на обновление события от пользователя длина аннотации {} меньше 20 символов",
@@ -587,6 +750,11 @@ public class EventServiceImpl implements EventService {
             }
         }
         Event updatedEvent = eventRepository.save(event);
+        eventSearchIndex.update(updatedEvent);
+        eventGeoIndex.update(updatedEvent);
+        eventSearchCache.invalidate(List.of(categoryId, updatedEvent.getCategory().getId()));
+        participationPermits.invalidate(eventId);
+        waitlistPromoter.mark(eventId);
         log.info("Обновлено событие {} на основании запроса пользователя {}", updatedEvent, updateRequest);
         return eventMapper.toEventFullDto(updatedEvent);
     }
@@ -603,6 +771,7 @@ public class EventServiceImpl implements EventService {
     }
 
     @Override
+    @Transactional
     public EventRequestStatusUpdateResult updateUserEventRequests(long userId, long eventId, EventRequestStatusUpdateRequest updateRequest) {
         User initiator = findUser(userId);
         Event event = findEvent(eventId, initiator);
@@ -610,44 +779,61 @@ public class EventServiceImpl implements EventService {
         if (Boolean.FALSE.equals(event.getRequestModeration()) && updateStatus.equals(RequestStatus.CONFIRMED)) {
             return EventRequestStatusUpdateResult.builder().build();
         }
-        if (getNumberConfirmedRequests(event) == event.getParticipantLimit() && updateStatus.equals(RequestStatus.CONFIRMED)) {
+        int participantLimit = event.getParticipantLimit();
+        int freePlaces = participantLimit == 0 ? Integer.MAX_VALUE : participantLimit - event.getConfirmedRequests();
+        if (freePlaces <= 0 && updateStatus.equals(RequestStatus.CONFIRMED)) {
             log.info("Нельзя подтвердить заявки, если уже достигнут лимит по заявкам на событие {}", event);
             throw new ConflictException();
         }
-        List<Long> requestsIdForUpdate = updateRequest.getRequestIds();
-        List<Request> requests = requestRepository.findAllByIdInAndEvent(requestsIdForUpdate, event);
-        List<ParticipationRequestDto> confirmedRequests = new ArrayList<>();
-        List<ParticipationRequestDto> rejectedRequests = new ArrayList<>();
-        boolean isLimitReached = getNumberConfirmedRequests(event) == event.getParticipantLimit();
+        List<Request> requests = requestRepository.findAllByIdInAndEvent(updateRequest.getRequestIds(), event);
         for (Request request : requests) {
             if (!request.getStatus().equals(RequestStatus.PENDING)) {
                 log.info("Статус можно изменить только у заявки, находящейся в состоянии ожидания." +
                         "Текущий статус - {}", request.getStatus());
                 throw new ConflictException();
             }
-            if (isLimitReached) {
-                updateStatus = RequestStatus.REJECTED;
-            }
-            request.setStatus(updateStatus);
-            Request savedRequest = requestRepository.save(request);
-            log.info("Изменен запрос на участие {}", savedRequest);
-            ParticipationRequestDto participationRequestDto = requestMapper.toParticipationRequestDto(request);
-            if (updateStatus.equals(RequestStatus.CONFIRMED)) {
-                confirmedRequests.add(participationRequestDto);
-                log.info("Заявка {} на участие в событии {} подтверждена", request, event);
-            } else if (updateStatus.equals(RequestStatus.REJECTED)) {
-                rejectedRequests.add(participationRequestDto);
-                log.info("Заявка {} на участие в событии {} отменена", request, event);
-            }
-            if (!isLimitReached && (getNumberConfirmedRequests(event) == event.getParticipantLimit())) {
-                isLimitReached = true;
-                log.info("Достигнут лимит заявок по участию в событии {}", event);
+        }
+        requests.sort(Comparator.comparing(Request::getId));
+        int confirmedCount = updateStatus.equals(RequestStatus.CONFIRMED) ? Math.min(freePlaces, requests.size()) : 0;
+        List<ParticipationRequestDto> confirmedRequests = setStatus(requests.subList(0, confirmedCount), RequestStatus.CONFIRMED);
+        List<ParticipationRequestDto> rejectedRequests = setStatus(requests.subList(confirmedCount, requests.size()), RequestStatus.REJECTED);
+        if (!confirmedRequests.isEmpty()) {
+            if (eventRepository.addConfirmedRequestsWithinLimit(eventId, confirmedCount) == 0) {
+                log.info("Лимит заявок на участие в событии {} достигнут параллельным запросом", event);
+                throw new ConflictException();
             }
+            eventSearchCache.invalidate(List.of(event.getCategory().getId()));
+            participationPermits.invalidate(eventId);
         }
+        if (!rejectedRequests.isEmpty()) {
+            waitlistPromoter.mark(eventId);
+        }
+        log.info("Подтверждено {} и отклонено {} заявок на участие в событии {}",
+                confirmedRequests.size(), rejectedRequests.size(), event);
         return EventRequestStatusUpdateResult.builder()
                 .confirmedRequests(confirmedRequests)
                 .rejectedRequests(rejectedRequests)
                 .build();
     }
 
+    private List<ParticipationRequestDto> setStatus(List<Request> requests, RequestStatus status) {
+        if (requests.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Long> requestIds = requests.stream()
+                .map(Request::getId)
+                .collect(Collectors.toList());
+        if (requestRepository.updatePendingStatus(requestIds, status.name()) != requestIds.size()) {
+            log.info("Статус заявок {} изменен параллельным запросом", requestIds);
+            throw new ConflictException();
+        }
+        return requests.stream()
+                .map(request -> {
+                    ParticipationRequestDto participationRequestDto = requestMapper.toParticipationRequestDto(request);
+                    participationRequestDto.setStatus(status);
+                    return participationRequestDto;
+                })
+                .collect(Collectors.toList());
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,109 @@
+package ru.practicum.event.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientException;
+import ru.practicum.client.StatClient;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps events.views in sync with stats-server so that listings can be sorted by views in SQL.
+ * On the first run and then every {@code full-sync-interval-ms} views of all published events are loaded;
+ * in between only events viewed since the previous run are refreshed every {@code sync-interval-ms}.
+ * The full runs catch up views that reached stats-server some other way or were lost, e.g. on restart.
+ * Hits reach stats-server asynchronously, so every event is refreshed once more on the following run
+ * to pick up hits that were still in flight.
+ */
+@Slf4j
+@Component
+public class EventViewsSync {
+
+    private static final int EVENTS_PER_REQUEST = 1000;
+
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final StatClient statClient;
+    private final long fullSyncIntervalMs;
+    private final Set<Long> viewedEvents = ConcurrentHashMap.newKeySet();
+    private Set<Long> previouslySynced = Set.of();
+    private long nextFullSync;
+
+    public EventViewsSync(NamedParameterJdbcTemplate namedJdbcTemplate,
+                          StatClient statClient,
+                          @Value("${ewm-stats.views.full-sync-interval-ms:3600000}") long fullSyncIntervalMs) {
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.statClient = statClient;
+        this.fullSyncIntervalMs = fullSyncIntervalMs;
+    }
+
+    public void markViewed(long eventId) {
+        viewedEvents.add(eventId);
+    }
+
+    @Scheduled(initialDelay = 0, fixedDelayString = "${ewm-stats.views.sync-interval-ms:10000}")
+    public synchronized void sync() {
+        long now = System.currentTimeMillis();
+        Set<Long> viewed = new HashSet<>(viewedEvents);
+        viewedEvents.removeAll(viewed);
+        if (now >= nextFullSync) {
+            List<Long> eventIds = namedJdbcTemplate.queryForList("SELECT id FROM PUBLIC.EVENTS WHERE state = 'PUBLISHED'",
+                    new MapSqlParameterSource(), Long.class);
+            if (updateViews(eventIds)) {
+                nextFullSync = now + fullSyncIntervalMs;
+                previouslySynced = viewed;
+                log.info("Загружены просмотры {} опубликованных событий", eventIds.size());
+            } else {
+                viewedEvents.addAll(viewed);
+            }
+            return;
+        }
+        Set<Long> eventIds = new HashSet<>(viewed);
+        eventIds.addAll(previouslySynced);
+        if (updateViews(new ArrayList<>(eventIds))) {
+            previouslySynced = viewed;
+        } else {
+            viewedEvents.addAll(eventIds);
+        }
+    }
+
+    private boolean updateViews(List<Long> eventIds) {
+        LocalDateTime now = LocalDateTime.now();
+        int updated = 0;
+        try {
+            for (int from = 0; from < eventIds.size(); from += EVENTS_PER_REQUEST) {
+                List<Long> chunk = eventIds.subList(from, Math.min(from + EVENTS_PER_REQUEST, eventIds.size()));
+                Map<Long, Long> views = statClient.fetchViews(chunk,
+                        EventEnricher.getViewsStart(now),
+                        EventEnricher.getViewsEnd(now),
+                        true);
+                for (int count : namedJdbcTemplate.batchUpdate("UPDATE PUBLIC.EVENTS SET views = :views\n" +
+                                "WHERE id = :id AND views <> :views",
+                        views.entrySet().stream()
+                                .map(entry -> new MapSqlParameterSource()
+                                        .addValue("id", entry.getKey())
+                                        .addValue("views", entry.getValue()))
+                                .toArray(MapSqlParameterSource[]::new))) {
+                    updated += Math.max(count, 0);
+                }
+            }
+        } catch (RestClientException e) {
+            log.warn("Не удалось обновить просмотры событий, повтор при следующей синхронизации", e);
+            return false;
+        }
+        if (updated > 0) {
+            log.debug("Обновлены просмотры {} событий", updated);
+        }
+        return true;
+    }
+
+}
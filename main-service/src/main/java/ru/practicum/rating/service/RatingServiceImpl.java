@@ -5,9 +5,9 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Service;
-import ru.practicum.event.mapper.EventMapper;
 import ru.practicum.event.model.Event;
 import ru.practicum.event.repo.EventRepository;
+import ru.practicum.event.service.EventEnricher;
 import ru.practicum.exception.ConflictException;
 import ru.practicum.exception.NotFoundException;
 import ru.practicum.exception.ValidationException;
@@ -22,8 +22,12 @@ import ru.practicum.user.model.User;
 import ru.practicum.user.repo.UserRepository;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -31,44 +35,99 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class RatingServiceImpl implements RatingService {
 
+    private static final int LIKE = 1;
+    private static final int DISLIKE = -1;
+
     private final NamedParameterJdbcTemplate namedJdbcTemplate;
     private final UserRepository userRepository;
     private final RequestRepository requestRepository;
     private final EventRepository eventRepository;
-    private final EventMapper eventMapper;
+    private final EventEnricher eventEnricher;
     private final UserMapper userMapper;
 
     @Override
     public EventsRating addEventsLike(Long userId, List<Long> eventIds) {
+        return addEventsRating(userId, eventIds, LIKE);
+    }
+
+    private EventsRating addEventsRating(Long userId, List<Long> eventIds, int rating) {
         User user = findUser(userId);
-        List<Event> eventsToAddLike = new ArrayList<>();
-        for (Long eventId : eventIds) {
-            Event event = findEvent(eventId);
-            checkUserTookPartInEvent(user, event);
-            eventsToAddLike.add(event);
+        List<Long> ids = validateEventIds(eventIds);
+        Map<Long, Integer> userRatings = getUserRatings(user, ids);
+        for (Long eventId : ids) {
+            if (userRatings.get(eventId) == rating) {
+                log.info("Пользователь {} уже поставил оценку {} событию {}", user, rating, eventId);
+                throw new ConflictException();
+            }
         }
-        addLikes(userId, eventIds);
+        upsertRatings(userId, ids, rating);
+        Map<Long, Event> events = eventRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Event::getId, Function.identity()));
         return EventsRating.builder()
-                .eventIds(eventsToAddLike.stream()
-                        .map(eventMapper::toEventShortDto)
-                        .collect(Collectors.toList()))
-                .rating("like")
+                .eventIds(eventEnricher.toEventShortDtos(ids.stream()
+                        .map(events::get)
+                        .filter(Objects::nonNull)
+                        .collect(Collectors.toList())))
+                .rating(rating == LIKE ? "like" : "dislike")
                 .build();
     }
 
-    private void addLikes(Long userId, List<Long> eventIds) {
-        List<String> listValues = new ArrayList<>();
-        String value = "(%d, :userId, 1)";
-        StringBuilder sql = new StringBuilder("INSERT INTO RATINGS (EVENT_ID, USER_ID, RATING) VALUES ");
+    private List<Long> validateEventIds(List<Long> eventIds) {
+        if (eventIds == null || eventIds.isEmpty() || eventIds.contains(null) || eventIds.contains(0L)) {
+            log.info("Передан неверный список идентификаторов событий {}", eventIds);
+            throw new ValidationException();
+        }
+        return eventIds.stream()
+                .distinct()
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Returns the rating the user gave to each of the events, 0 if none, checking with the same query
+     * that all events exist and that the user has requested to take part in each of them.
+     */
+    private Map<Long, Integer> getUserRatings(User user, List<Long> eventIds) {
+        String sql = "SELECT events.id,\n" +
+                "       EXISTS (SELECT 1 FROM PUBLIC.REQUESTS\n" +
+                "               WHERE requests.event_id = events.id AND requests.requester_id = :userId) AS took_part,\n" +
+                "       COALESCE(ratings.rating, 0) AS rating\n" +
+                "FROM PUBLIC.EVENTS\n" +
+                "LEFT JOIN PUBLIC.RATINGS ON ratings.event_id = events.id AND ratings.user_id = :userId\n" +
+                "WHERE events.id IN (:eventIds)";
+        MapSqlParameterSource parameters = new MapSqlParameterSource();
+        parameters.addValue("userId", user.getId());
+        parameters.addValue("eventIds", eventIds);
+        Map<Long, Integer> ratings = new HashMap<>();
+        List<Long> notTakenPart = new ArrayList<>();
+        namedJdbcTemplate.query(sql, parameters, rs -> {
+            ratings.put(rs.getLong("id"), rs.getInt("rating"));
+            if (!rs.getBoolean("took_part")) {
+                notTakenPart.add(rs.getLong("id"));
+            }
+        });
         for (Long eventId : eventIds) {
-            listValues.add(String.format(value, eventId));
+            if (!ratings.containsKey(eventId)) {
+                log.info("Не найдено событие с идентификатором {}", eventId);
+                throw new NotFoundException();
+            }
         }
-        String values = String.join(",", listValues);
-        sql.append(values);
+        if (!notTakenPart.isEmpty()) {
+            log.info("Пользователь {} не принимал участие в событиях {}", user, notTakenPart);
+            throw new ConflictException();
+        }
+        return ratings;
+    }
+
+    private void upsertRatings(long userId, List<Long> eventIds, int rating) {
+        String sql = "INSERT INTO PUBLIC.RATINGS (event_id, user_id, rating)\n" +
+                "VALUES :rows\n" +
+                "ON CONFLICT (event_id, user_id) DO UPDATE SET rating = EXCLUDED.rating";
         MapSqlParameterSource parameters = new MapSqlParameterSource();
-        parameters.addValue("userId", userId);
-        namedJdbcTemplate.update(sql.toString(), parameters);
-        log.info("Добавлен лайк событиям {} от пользователя {}", eventIds, userId);
+        parameters.addValue("rows", eventIds.stream()
+                .map(eventId -> new Object[]{eventId, userId, rating})
+                .collect(Collectors.toList()));
+        namedJdbcTemplate.update(sql, parameters);
+        log.info("Добавлена оценка {} событиям {} от пользователя {}", rating, eventIds, userId);
     }
 
     @Override
@@ -79,16 +138,15 @@ public class RatingServiceImpl implements RatingService {
         int rating = getUserEventRating(userId, eventId);
         switch (rating) {
             case -1:
-                deleteUserRatings(userId, List.of(eventId));
             case 0:
-                addLikes(userId, List.of(eventId));
+                upsertRatings(userId, List.of(eventId), LIKE);
                 break;
             case 1:
             log.info("Пользователь {} уже поставил лайк событию {}", user, event);
             throw new ConflictException();
         }
         return EventRating.builder()
-                .event(eventMapper.toEventShortDto(event))
+                .event(eventEnricher.toEventShortDtos(List.of(event)).get(0))
                 .rating("like")
                 .build();
     }
@@ -132,35 +190,7 @@ public class RatingServiceImpl implements RatingService {
 
     @Override
     public EventsRating addEventsDislike(Long userId, List<Long> eventIds) {
-        User user = findUser(userId);
-        List<Event> eventsToAddLike = new ArrayList<>();
-        for (Long eventId : eventIds) {
-            Event event = findEvent(eventId);
-            checkUserTookPartInEvent(user, event);
-            eventsToAddLike.add(event);
-        }
-        addDislikes(userId, eventIds);
-        return EventsRating.builder()
-                .eventIds(eventsToAddLike.stream()
-                        .map(eventMapper::toEventShortDto)
-                        .collect(Collectors.toList()))
-                .rating("dislike")
-                .build();
-    }
-
-    private void addDislikes(Long userId, List<Long> eventIds) {
-        List<String> listValues = new ArrayList<>();
-        String value = "(%d, :userId, -1)";
-        StringBuilder sql = new StringBuilder("INSERT INTO RATINGS (EVENT_ID, USER_ID, RATING) VALUES ");
-        for (Long eventId : eventIds) {
-            listValues.add(String.format(value, eventId));
-        }
-        String values = String.join(",", listValues);
-        sql.append(values);
-        MapSqlParameterSource parameters = new MapSqlParameterSource();
-        parameters.addValue("userId", userId);
-        namedJdbcTemplate.update(sql.toString(), parameters);
-        log.info("Добавлен дизлайк событиям {} от пользователя {}", eventIds, userId);
+        return addEventsRating(userId, eventIds, DISLIKE);
     }
 
     @Override
@@ -171,43 +201,35 @@ public class RatingServiceImpl implements RatingService {
         int rating = getUserEventRating(userId, eventId);
         switch (rating) {
             case 1:
-                deleteUserRatings(userId, List.of(eventId));
             case 0:
-                addDislike(userId, eventId);
+                upsertRatings(userId, List.of(eventId), DISLIKE);
                 break;
             case -1:
                 log.info("Пользователь {} уже поставил дизлайк событию {}", user, event);
                 throw new ConflictException();
         }
         return EventRating.builder()
-                .event(eventMapper.toEventShortDto(event))
+                .event(eventEnricher.toEventShortDtos(List.of(event)).get(0))
                 .rating("dislike")
                 .build();
     }
 
-    private void addDislike(long userId, long eventId) {
-        String sql = "INSERT INTO RATINGS (EVENT_ID, USER_ID, RATING)\n" +
-                "VALUES (:eventId, :userId, -1)";
-        MapSqlParameterSource parameters = new MapSqlParameterSource();
-        parameters.addValue("userId", userId);
-        parameters.addValue("eventId", eventId);
-        namedJdbcTemplate.update(sql, parameters);
-        log.info("Добавлен дизлайк событию {} от пользователя {}", eventId, userId);
-    }
-
     @Override
     public void deleteEventsLike(Long userId, List<Long> eventIds) {
+        deleteEventsRating(userId, eventIds, LIKE);
+    }
+
+    private void deleteEventsRating(Long userId, List<Long> eventIds, int rating) {
         User user = findUser(userId);
-        for (Long eventId : eventIds) {
-            Event event = findEvent(eventId);
-            checkUserTookPartInEvent(user, event);
-            int rating = getUserEventRating(userId, eventId);
-            if (rating != 1) {
-                log.info("Пользователь {} не ставил лайк событию {}", user, event);
+        List<Long> ids = validateEventIds(eventIds);
+        Map<Long, Integer> userRatings = getUserRatings(user, ids);
+        for (Long eventId : ids) {
+            if (userRatings.get(eventId) != rating) {
+                log.info("Пользователь {} не ставил оценку {} событию {}", user, rating, eventId);
                 throw new ConflictException();
             }
         }
-        deleteUserRatings(userId, eventIds);
+        deleteUserRatings(userId, ids);
     }
 
     @Override
@@ -224,17 +246,7 @@ public class RatingServiceImpl implements RatingService {
 
     @Override
     public void deleteEventsDislike(Long userId, List<Long> eventIds) {
-        User user = findUser(userId);
-        for (Long eventId : eventIds) {
-            Event event = findEvent(eventId);
-            checkUserTookPartInEvent(user, event);
-            int rating = getUserEventRating(userId, eventId);
-            if (rating != -1) {
-                log.info("Пользователь {} не ставил дизлайк событию {}", user, event);
-                throw new ConflictException();
-            }
-        }
-        deleteUserRatings(userId, eventIds);
+        deleteEventsRating(userId, eventIds, DISLIKE);
     }
 
     @Override
@@ -258,13 +270,11 @@ public class RatingServiceImpl implements RatingService {
                 "LIMIT :top";
         MapSqlParameterSource parameters = new MapSqlParameterSource();
         parameters.addValue("top", top);
-        List<Event> events = namedJdbcTemplate.query(sql, parameters, (rs, rowNum) ->
-                findEvent(rs.getLong("event_id")));
+        List<Long> eventIds = namedJdbcTemplate.queryForList(sql, parameters, Long.class);
+        List<Event> events = eventRepository.findAllByIdInOrder(eventIds);
         log.info("Получен рейтинг топ-{} событий: {}", top, events);
         return EventTopRating.builder()
-                .events(events.stream()
-                        .map(eventMapper::toEventShortDto)
-                        .collect(Collectors.toList()))
+                .events(eventEnricher.toEventShortDtos(events))
                 .build();
     }
 
@@ -278,8 +288,13 @@ public class RatingServiceImpl implements RatingService {
                 "LIMIT :top";
         MapSqlParameterSource parameters = new MapSqlParameterSource();
         parameters.addValue("top", top);
-        List<User> users = namedJdbcTemplate.query(sql, parameters, (rs, rowNum) ->
-                findUser(rs.getLong("initiator_id")));
+        List<Long> userIds = namedJdbcTemplate.queryForList(sql, parameters, Long.class);
+        Map<Long, User> foundUsers = userRepository.findAllById(userIds).stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+        List<User> users = userIds.stream()
+                .map(foundUsers::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
         log.info("Получен рейтинг топ-{} авторов событий: {}", top, users);
         return UserTopRating.builder()
                 .users(users.stream()
@@ -6,8 +6,10 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import ru.practicum.request.dto.ParticipationRequestDto;
+import ru.practicum.request.dto.RequestTicketDto;
 import ru.practicum.request.service.RequestService;
 
+import java.net.URI;
 import java.util.List;
 
 @Slf4j
@@ -25,10 +27,25 @@ public class RequestController {
     }
 
     @PostMapping
-    public ResponseEntity<ParticipationRequestDto> createUserRequest(@PathVariable Long userId,
-                                                                     @RequestParam(required = false) Long eventId) {
-        log.info("Received POST-request at /users/{}/requests?eventId={} endpoint", userId, eventId);
-        return ResponseEntity.status(HttpStatus.CREATED).body(requestService.createUserRequest(userId, eventId));
+    public ResponseEntity<?> createUserRequest(@PathVariable Long userId,
+                                               @RequestParam(required = false) Long eventId,
+                                               @RequestParam(required = false) Boolean waitlist) {
+        log.info("Received POST-request at /users/{}/requests?eventId={}&waitlist={} endpoint", userId, eventId, waitlist);
+        if (requestService.isRushEvent(eventId)) {
+            RequestTicketDto ticket = requestService.enqueueUserRequest(userId, eventId);
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .location(URI.create("/users/" + userId + "/requests/tickets/" + ticket.getId()))
+                    .body(ticket);
+        }
+        return ResponseEntity.status(HttpStatus.CREATED).body(requestService.createUserRequest(userId, eventId, waitlist));
+    }
+
+    @GetMapping("tickets/{ticketId}")
+    public ResponseEntity<RequestTicketDto> getUserRequestTicket(@PathVariable Long userId,
+                                                                 @PathVariable Long ticketId,
+                                                                 @RequestParam(required = false) Long wait) {
+        log.info("Received GET-request at /users/{}/requests/tickets/{}?wait={} endpoint", userId, ticketId, wait);
+        return ResponseEntity.ok().body(requestService.getUserRequestTicket(userId, ticketId, wait));
     }
 
     @PatchMapping("{requestId}/cancel")
@@ -0,0 +1,32 @@
+package ru.practicum.request.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+import lombok.Data;
+import org.springframework.format.annotation.DateTimeFormat;
+import ru.practicum.request.model.TicketStatus;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+public class RequestTicketDto {
+
+    private Long id;
+    private Long event;
+    private Long requester;
+
+    @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime created;
+
+    private TicketStatus status;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long position;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private ParticipationRequestDto request;
+
+}
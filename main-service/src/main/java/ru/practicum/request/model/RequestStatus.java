@@ -5,6 +5,7 @@ public enum RequestStatus {
     PENDING,
     CONFIRMED,
     REJECTED,
-    CANCELED
+    CANCELED,
+    WAITLISTED
 
 }
\ No newline at end of file
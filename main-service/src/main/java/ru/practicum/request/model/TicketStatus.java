@@ -0,0 +1,10 @@
+package ru.practicum.request.model;
+
+public enum TicketStatus {
+
+    QUEUED,
+    CONFIRMED,
+    REJECTED,
+    FAILED
+
+}
@@ -1,11 +1,17 @@
 package ru.practicum.request.repo;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.event.model.Event;
 import ru.practicum.request.model.Request;
 import ru.practicum.user.model.User;
 
+import javax.persistence.LockModeType;
 import java.util.List;
 import java.util.Optional;
 
@@ -16,10 +22,16 @@ public interface RequestRepository extends JpaRepository<Request, Long> {
 
     List<Request> findAllByEventAndRequester(Event event, User requester);
 
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
     Optional<Request> findByIdAndRequester(long id, User requester);
 
     List<Request> findAllByEvent(Event event);
 
     List<Request> findAllByIdInAndEvent(List<Long> requestsIdForUpdate, Event event);
 
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE requests SET status = :status WHERE id IN (:requestIds) AND status = 'PENDING'", nativeQuery = true)
+    int updatePendingStatus(@Param("requestIds") List<Long> requestIds, @Param("status") String status);
+
 }
\ No newline at end of file
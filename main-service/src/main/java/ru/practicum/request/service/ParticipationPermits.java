@@ -0,0 +1,82 @@
+package ru.practicum.request.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.event.model.Event;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory count of free places per event, loaded from the event on first use. The count is only a hint:
+ * the place itself is always taken by a conditional update of events.confirmed_requests, which stays the
+ * source of truth, and a count that says the event is full is checked against that update before the request
+ * is turned down. A permit taken in a transaction that rolls back is returned; any other change of the
+ * confirmed count or the limit drops the count once the change is committed, so it is reloaded from an event
+ * that already sees it. Counts expire a fixed time after loading, so steady traffic does not keep a stale one alive.
+ */
+@Component
+public class ParticipationPermits {
+
+    private final Cache<Long, AtomicInteger> freePlaces;
+
+    public ParticipationPermits(@Value("${requests.permits.max-events:10000}") long maxEvents,
+                                @Value("${requests.permits.ttl-ms:60000}") long ttlMs) {
+        this.freePlaces = Caffeine.newBuilder()
+                .maximumSize(maxEvents)
+                .expireAfterWrite(Duration.ofMillis(ttlMs))
+                .build();
+    }
+
+    /**
+     * Takes one free place of the event, returns false if the count says the event is full.
+     */
+    public boolean tryAcquire(Event event) {
+        AtomicInteger places = freePlaces.get(event.getId(),
+                eventId -> new AtomicInteger(event.getParticipantLimit() - event.getConfirmedRequests()));
+        int current = places.get();
+        while (current > 0) {
+            if (places.compareAndSet(current, current - 1)) {
+                releaseOnRollback(places);
+                return true;
+            }
+            current = places.get();
+        }
+        return false;
+    }
+
+    /**
+     * Drops the count of the event after the current transaction commits, or at once outside a transaction.
+     */
+    public void invalidate(long eventId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    freePlaces.invalidate(eventId);
+                }
+            });
+        } else {
+            freePlaces.invalidate(eventId);
+        }
+    }
+
+    private void releaseOnRollback(AtomicInteger places) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    places.incrementAndGet();
+                }
+            }
+        });
+    }
+
+}
@@ -1,6 +1,7 @@
 package ru.practicum.request.service;
 
 import ru.practicum.request.dto.ParticipationRequestDto;
+import ru.practicum.request.dto.RequestTicketDto;
 
 import java.util.List;
 
@@ -8,7 +9,13 @@ public interface RequestService {
 
     List<ParticipationRequestDto> getUserRequests(long userId);
 
-    ParticipationRequestDto createUserRequest(long userId, Long eventId);
+    ParticipationRequestDto createUserRequest(long userId, Long eventId, Boolean waitlist);
+
+    boolean isRushEvent(Long eventId);
+
+    RequestTicketDto enqueueUserRequest(long userId, long eventId);
+
+    RequestTicketDto getUserRequestTicket(long userId, long ticketId, Long wait);
 
     ParticipationRequestDto cancelUserRequest(long userId, long requestId);
 
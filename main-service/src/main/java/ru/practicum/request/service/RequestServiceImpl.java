@@ -2,14 +2,18 @@ package ru.practicum.request.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.event.model.Event;
 import ru.practicum.event.model.EventState;
 import ru.practicum.event.repo.EventRepository;
+import ru.practicum.event.service.EventSearchCache;
 import ru.practicum.exception.ConflictException;
 import ru.practicum.exception.NotFoundException;
 import ru.practicum.exception.ValidationException;
 import ru.practicum.request.dto.ParticipationRequestDto;
+import ru.practicum.request.dto.RequestTicketDto;
 import ru.practicum.request.mapper.RequestMapper;
 import ru.practicum.request.model.Request;
 import ru.practicum.request.model.RequestStatus;
@@ -32,6 +36,10 @@ public class RequestServiceImpl implements RequestService {
     private final UserRepository userRepository;
     private final EventRepository eventRepository;
     private final RequestMapper requestMapper;
+    private final EventSearchCache eventSearchCache;
+    private final ParticipationPermits participationPermits;
+    private final RushQueue rushQueue;
+    private final WaitlistPromoter waitlistPromoter;
 
     @Override
     public List<ParticipationRequestDto> getUserRequests(long userId) {
@@ -59,7 +67,8 @@ public class RequestServiceImpl implements RequestService {
     }
 
     @Override
-    public ParticipationRequestDto createUserRequest(long userId, Long eventId) {
+    @Transactional
+    public ParticipationRequestDto createUserRequest(long userId, Long eventId, Boolean waitlist) {
         if (eventId == null) {
             log.info("Не указан обязательный параметр запроса eventId");
             throw new ValidationException();
@@ -79,10 +88,6 @@ public class RequestServiceImpl implements RequestService {
             log.info("Нельзя участвовать в неопубликованном событии {}", event);
             throw new ConflictException();
         }
-        if (eventParticipantLimitReached(event)) {
-            log.info("У события {} достигнут лимит запросов на участие", event);
-            throw new ConflictException();
-        }
         Request newRequest = Request.builder()
                 .event(event)
                 .status(Boolean.TRUE.equals(event.getRequestModeration()) ? RequestStatus.PENDING : RequestStatus.CONFIRMED)
@@ -91,12 +96,56 @@ public class RequestServiceImpl implements RequestService {
                 .build();
         if (event.getParticipantLimit() == 0) {
             newRequest.setStatus(RequestStatus.CONFIRMED);
+            eventRepository.addConfirmedRequests(event.getId(), 1);
+        } else if (newRequest.getStatus() == RequestStatus.CONFIRMED ? !reservePlace(event) : eventParticipantLimitReached(event)) {
+            if (!Boolean.TRUE.equals(waitlist)) {
+                log.info("У события {} достигнут лимит запросов на участие", event);
+                throw new ConflictException();
+            }
+            newRequest.setStatus(RequestStatus.WAITLISTED);
+        }
+        Request savedRequest;
+        try {
+            savedRequest = requestRepository.saveAndFlush(newRequest);
+        } catch (DataIntegrityViolationException e) {
+            log.info("Запрос на участие в событии {} от пользователя {} уже существует", event, requester);
+            throw new ConflictException();
+        }
+        if (savedRequest.getStatus() == RequestStatus.CONFIRMED) {
+            eventSearchCache.invalidate(List.of(event.getCategory().getId()));
+        } else if (savedRequest.getStatus() == RequestStatus.WAITLISTED) {
+            waitlistPromoter.mark(event.getId());
         }
-        Request savedRequest = requestRepository.save(newRequest);
         log.info("В базе сохранен новый запрос на участие в событии {}", savedRequest);
         return requestMapper.toParticipationRequestDto(savedRequest);
     }
 
+    @Override
+    public boolean isRushEvent(Long eventId) {
+        return eventId != null && rushQueue.isRushEvent(eventId);
+    }
+
+    @Override
+    public RequestTicketDto enqueueUserRequest(long userId, long eventId) {
+        User requester = findUser(userId);
+        RequestTicketDto ticket = rushQueue.enqueue(requester.getId(), eventId);
+        log.info("Запрос на участие в событии {} от пользователя {} поставлен в очередь с талоном {}", eventId, requester, ticket);
+        return ticket;
+    }
+
+    @Override
+    public RequestTicketDto getUserRequestTicket(long userId, long ticketId, Long wait) {
+        if (ticketId == 0 || wait != null && wait < 0) {
+            throw new ValidationException();
+        }
+        RequestTicketDto ticket = rushQueue.getTicket(userId, ticketId, wait != null ? wait : 0);
+        if (ticket == null) {
+            log.info("Не найден талон {} пользователя {}", ticketId, userId);
+            throw new NotFoundException();
+        }
+        return ticket;
+    }
+
     private Event findEvent(long eventId) {
         if (eventId == 0) {
             throw new ValidationException();
@@ -108,17 +157,31 @@ public class RequestServiceImpl implements RequestService {
         return event.get();
     }
 
+    private boolean reservePlace(Event event) {
+        boolean acquired = participationPermits.tryAcquire(event);
+        boolean reserved = eventRepository.reserveConfirmedRequest(event.getId()) != 0;
+        if (acquired != reserved) {
+            // the in-memory count disagrees with the database, reload it once this transaction commits
+            participationPermits.invalidate(event.getId());
+        }
+        return reserved;
+    }
+
     private boolean eventParticipantLimitReached(Event event) {
-        long numberConfirmedRequests = event.getRequests().stream()
-                .filter(request -> request.getStatus().equals(RequestStatus.CONFIRMED))
-                .count();
-        return numberConfirmedRequests != 0 && numberConfirmedRequests >= event.getParticipantLimit();
+        return event.getParticipantLimit() != 0 && event.getConfirmedRequests() >= event.getParticipantLimit();
     }
 
     @Override
+    @Transactional
     public ParticipationRequestDto cancelUserRequest(long userId, long requestId) {
         User requester = findUser(userId);
         Request request = findRequest(requestId, requester);
+        if (request.getStatus() == RequestStatus.CONFIRMED) {
+            eventRepository.addConfirmedRequests(request.getEvent().getId(), -1);
+            participationPermits.invalidate(request.getEvent().getId());
+            eventSearchCache.invalidate(List.of(request.getEvent().getCategory().getId()));
+            waitlistPromoter.mark(request.getEvent().getId());
+        }
         request.setStatus(RequestStatus.CANCELED);
         Request cancelledRequest = requestRepository.save(request);
         log.info("В базе отменено событие {} пользователем {}", cancelledRequest, requester);
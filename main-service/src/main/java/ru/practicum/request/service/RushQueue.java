@@ -0,0 +1,403 @@
+package ru.practicum.request.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.event.model.Event;
+import ru.practicum.event.model.EventState;
+import ru.practicum.event.service.EventSearchCache;
+import ru.practicum.exception.ConflictException;
+import ru.practicum.request.dto.ParticipationRequestDto;
+import ru.practicum.request.dto.RequestTicketDto;
+import ru.practicum.request.model.RequestStatus;
+import ru.practicum.request.model.TicketStatus;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Accepts participation requests to events in rush mode without touching the database on arrival.
+ * Requests get a ticket and wait in a FIFO queue of their event; one worker at a time drains a queue
+ * in batches of up to {@code batch-size}, each in a single transaction that locks the event row, confirms
+ * requests in arrival order while there are free places and rejects the rest. Request moderation is not
+ * applied in rush mode. Tickets can be polled for {@code ticket-ttl-ms} after they are issued.
+ * The queue of an event is dropped once rush mode is turned off and the queue is drained.
+ * On shutdown new requests are refused and the queues are drained for up to {@code shutdown-timeout-ms};
+ * tickets still queued after that are completed as failed, so that no accepted ticket is dropped silently.
+ */
+@Slf4j
+@Component
+public class RushQueue implements InitializingBean, DisposableBean {
+
+    private static final int ROWS_PER_STATEMENT = 1000;
+
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ParticipationPermits participationPermits;
+    private final EventSearchCache eventSearchCache;
+    private final ExecutorService executor;
+    private final int batchSize;
+    private final int queueCapacity;
+    private final long maxWaitMs;
+    private final long shutdownTimeoutMs;
+    private final Set<Long> rushEvents = ConcurrentHashMap.newKeySet();
+    private final Map<Long, EventQueue> queues = new ConcurrentHashMap<>();
+    private final Cache<Long, Ticket> tickets;
+    private final AtomicLong ticketIds = new AtomicLong();
+    private final AtomicInteger queued = new AtomicInteger();
+    private volatile boolean stopping;
+
+    public RushQueue(NamedParameterJdbcTemplate namedJdbcTemplate,
+                     TransactionTemplate transactionTemplate,
+                     ParticipationPermits participationPermits,
+                     EventSearchCache eventSearchCache,
+                     MeterRegistry meterRegistry,
+                     @Value("${requests.rush.workers:4}") int workers,
+                     @Value("${requests.rush.batch-size:500}") int batchSize,
+                     @Value("${requests.rush.queue-capacity:100000}") int queueCapacity,
+                     @Value("${requests.rush.ticket-ttl-ms:600000}") long ticketTtlMs,
+                     @Value("${requests.rush.max-wait-ms:30000}") long maxWaitMs,
+                     @Value("${requests.rush.shutdown-timeout-ms:10000}") long shutdownTimeoutMs) {
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.participationPermits = participationPermits;
+        this.eventSearchCache = eventSearchCache;
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = ExecutorServiceMetrics.monitor(meterRegistry,
+                Executors.newFixedThreadPool(workers, runnable -> {
+                    Thread thread = new Thread(runnable, "request-rush-" + threads.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }),
+                "request-rush");
+        this.batchSize = batchSize;
+        this.queueCapacity = queueCapacity;
+        this.maxWaitMs = maxWaitMs;
+        this.shutdownTimeoutMs = shutdownTimeoutMs;
+        this.tickets = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMillis(ticketTtlMs))
+                .build();
+        Gauge.builder("requests.rush.queued", queued, AtomicInteger::get)
+                .description("Participation requests waiting in rush mode queues")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        rushEvents.addAll(namedJdbcTemplate.queryForList("SELECT id FROM PUBLIC.EVENTS WHERE rush_mode",
+                new MapSqlParameterSource(), Long.class));
+        log.info("Загружено {} событий в режиме ажиотажного спроса", rushEvents.size());
+    }
+
+    public boolean isRushEvent(long eventId) {
+        return rushEvents.contains(eventId);
+    }
+
+    public void update(Event event) {
+        if (Boolean.TRUE.equals(event.getRushMode())) {
+            rushEvents.add(event.getId());
+        } else {
+            rushEvents.remove(event.getId());
+            EventQueue queue = queues.get(event.getId());
+            if (queue != null) {
+                synchronized (queue) {
+                    removeIfIdle(queue);
+                }
+            }
+        }
+    }
+
+    public RequestTicketDto enqueue(long requesterId, long eventId) {
+        while (true) {
+            EventQueue queue = queues.computeIfAbsent(eventId, EventQueue::new);
+            Ticket ticket;
+            boolean schedule;
+            synchronized (queue) {
+                if (queue.removed) {
+                    continue;
+                }
+                if (stopping) {
+                    log.info("Запрос на участие в событии {} не принят: приложение останавливается", eventId);
+                    throw new ConflictException();
+                }
+                if (queue.tickets.size() >= queueCapacity) {
+                    log.info("Очередь запросов на участие в событии {} переполнена", eventId);
+                    throw new ConflictException();
+                }
+                ticket = new Ticket(ticketIds.incrementAndGet(), queue, requesterId, LocalDateTime.now(), ++queue.enqueued);
+                tickets.put(ticket.id, ticket);
+                queue.tickets.add(ticket);
+                queued.incrementAndGet();
+                schedule = !queue.draining;
+                queue.draining = true;
+            }
+            if (schedule) {
+                schedule(queue);
+            }
+            return toDto(ticket);
+        }
+    }
+
+    /**
+     * Returns the ticket of the requester, waiting up to {@code waitMs} (but no longer than {@code max-wait-ms})
+     * for its outcome, or null if there is no such ticket.
+     */
+    public RequestTicketDto getTicket(long requesterId, long ticketId, long waitMs) {
+        Ticket ticket = tickets.getIfPresent(ticketId);
+        if (ticket == null || ticket.requesterId != requesterId) {
+            return null;
+        }
+        if (waitMs > 0) {
+            try {
+                ticket.outcome.get(Math.min(waitMs, maxWaitMs), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException | ExecutionException e) {
+                log.debug("Запрос на участие по талону {} ещё в очереди", ticketId);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return toDto(ticket);
+    }
+
+    private void schedule(EventQueue queue) {
+        try {
+            executor.execute(() -> drain(queue));
+        } catch (RejectedExecutionException e) {
+            log.warn("Очередь запросов на участие в событии {} будет закрыта при остановке приложения", queue.eventId);
+        }
+    }
+
+    /**
+     * Processes one batch and hands the queue back to the executor, so that hot events take turns;
+     * while stopping the executor takes no new tasks and the queue is drained to the end instead.
+     */
+    private void drain(EventQueue queue) {
+        while (true) {
+            List<Ticket> batch = new ArrayList<>();
+            synchronized (queue) {
+                while (batch.size() < batchSize && !queue.tickets.isEmpty()) {
+                    batch.add(queue.tickets.poll());
+                }
+            }
+            queued.addAndGet(-batch.size());
+            if (!batch.isEmpty()) {
+                process(queue.eventId, batch);
+            }
+            synchronized (queue) {
+                queue.processed += batch.size();
+                if (queue.tickets.isEmpty()) {
+                    queue.draining = false;
+                    removeIfIdle(queue);
+                    return;
+                }
+            }
+            if (!stopping) {
+                schedule(queue);
+                return;
+            }
+        }
+    }
+
+    private void removeIfIdle(EventQueue queue) {
+        if (!queue.draining && queue.tickets.isEmpty() && !rushEvents.contains(queue.eventId)) {
+            queue.removed = true;
+            queues.remove(queue.eventId, queue);
+        }
+    }
+
+    private void process(long eventId, List<Ticket> batch) {
+        Map<Long, ParticipationRequestDto> confirmed;
+        try {
+            confirmed = transactionTemplate.execute(status -> admit(eventId, batch));
+        } catch (RuntimeException e) {
+            log.error("Не удалось обработать {} запросов на участие в событии {}", batch.size(), eventId, e);
+            batch.forEach(ticket -> ticket.outcome.complete(toDto(ticket, TicketStatus.FAILED, null)));
+            return;
+        }
+        if (confirmed == null) {
+            confirmed = Map.of();
+        }
+        if (!confirmed.isEmpty()) {
+            participationPermits.invalidate(eventId);
+        }
+        for (Ticket ticket : batch) {
+            ParticipationRequestDto request = confirmed.get(ticket.id);
+            ticket.outcome.complete(toDto(ticket, request != null ? TicketStatus.CONFIRMED : TicketStatus.REJECTED, request));
+        }
+        log.info("Обработано {} запросов на участие в событии {}, подтверждено {}", batch.size(), eventId, confirmed.size());
+    }
+
+    private Map<Long, ParticipationRequestDto> admit(long eventId, List<Ticket> batch) {
+        MapSqlParameterSource parameters = new MapSqlParameterSource("eventId", eventId);
+        List<Map<String, Object>> events = namedJdbcTemplate.queryForList("SELECT initiator_id, category_id, state,\n" +
+                "participant_limit, confirmed_requests\n" +
+                "FROM PUBLIC.EVENTS\n" +
+                "WHERE id = :eventId\n" +
+                "FOR UPDATE", parameters);
+        if (events.isEmpty() || !EventState.PUBLISHED.name().equals(events.get(0).get("state"))) {
+            log.info("Событие {} не найдено или не опубликовано, запросы на участие отклонены", eventId);
+            return Map.of();
+        }
+        Map<String, Object> event = events.get(0);
+        long initiatorId = ((Number) event.get("initiator_id")).longValue();
+        int limit = ((Number) event.get("participant_limit")).intValue();
+        long freePlaces = limit == 0 ? Long.MAX_VALUE : limit - ((Number) event.get("confirmed_requests")).longValue();
+        Set<Long> existing = new HashSet<>(namedJdbcTemplate.queryForList("SELECT requester_id\n" +
+                        "FROM PUBLIC.REQUESTS\n" +
+                        "WHERE event_id = :eventId AND requester_id IN (:requesterIds)",
+                new MapSqlParameterSource("eventId", eventId)
+                        .addValue("requesterIds", batch.stream()
+                                .map(ticket -> ticket.requesterId)
+                                .distinct()
+                                .collect(Collectors.toList())),
+                Long.class));
+        Map<Long, Ticket> accepted = new LinkedHashMap<>();
+        for (Ticket ticket : batch) {
+            if (accepted.size() >= freePlaces) {
+                break;
+            }
+            if (ticket.requesterId != initiatorId && !existing.contains(ticket.requesterId)) {
+                accepted.putIfAbsent(ticket.requesterId, ticket);
+            }
+        }
+        Map<Long, ParticipationRequestDto> confirmed = new HashMap<>();
+        List<Ticket> rows = new ArrayList<>(accepted.values());
+        for (int from = 0; from < rows.size(); from += ROWS_PER_STATEMENT) {
+            List<Ticket> chunk = rows.subList(from, Math.min(from + ROWS_PER_STATEMENT, rows.size()));
+            namedJdbcTemplate.query("INSERT INTO PUBLIC.REQUESTS (event_id, requester_id, creation_date, status)\n" +
+                            "VALUES :rows\n" +
+                            "ON CONFLICT (event_id, requester_id) DO NOTHING\n" +
+                            "RETURNING id, requester_id",
+                    new MapSqlParameterSource("rows", chunk.stream()
+                            .map(ticket -> new Object[]{eventId, ticket.requesterId, ticket.created, RequestStatus.CONFIRMED.name()})
+                            .collect(Collectors.toList())),
+                    rs -> {
+                        Ticket ticket = accepted.get(rs.getLong("requester_id"));
+                        confirmed.put(ticket.id, ParticipationRequestDto.builder()
+                                .id(rs.getLong("id"))
+                                .event(eventId)
+                                .created(ticket.created)
+                                .requester(ticket.requesterId)
+                                .status(RequestStatus.CONFIRMED)
+                                .build());
+                    });
+        }
+        if (!confirmed.isEmpty()) {
+            namedJdbcTemplate.update("UPDATE PUBLIC.EVENTS SET confirmed_requests = confirmed_requests + :count\n" +
+                    "WHERE id = :eventId", parameters.addValue("count", confirmed.size()));
+            eventSearchCache.invalidate(List.of(((Number) event.get("category_id")).longValue()));
+        }
+        return confirmed;
+    }
+
+    private RequestTicketDto toDto(Ticket ticket) {
+        RequestTicketDto outcome = ticket.outcome.getNow(null);
+        if (outcome != null) {
+            return outcome;
+        }
+        RequestTicketDto queuedTicket = toDto(ticket, TicketStatus.QUEUED, null);
+        queuedTicket.setPosition(Math.max(ticket.position - ticket.queue.processed, 1));
+        return queuedTicket;
+    }
+
+    private static RequestTicketDto toDto(Ticket ticket, TicketStatus status, ParticipationRequestDto request) {
+        return RequestTicketDto.builder()
+                .id(ticket.id)
+                .event(ticket.eventId)
+                .requester(ticket.requesterId)
+                .created(ticket.created)
+                .status(status)
+                .request(request)
+                .build();
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        stopping = true;
+        executor.shutdown();
+        if (!executor.awaitTermination(shutdownTimeoutMs, TimeUnit.MILLISECONDS)) {
+            log.warn("Очереди запросов на участие не обработаны за {} мс", shutdownTimeoutMs);
+        }
+        int failed = 0;
+        for (EventQueue queue : queues.values()) {
+            List<Ticket> rest;
+            synchronized (queue) {
+                rest = new ArrayList<>(queue.tickets);
+                queue.tickets.clear();
+            }
+            queued.addAndGet(-rest.size());
+            rest.forEach(ticket -> ticket.outcome.complete(toDto(ticket, TicketStatus.FAILED, null)));
+            failed += rest.size();
+        }
+        if (failed > 0) {
+            log.warn("При остановке не обработано {} запросов на участие, талоны помечены как FAILED", failed);
+        }
+    }
+
+    private static class EventQueue {
+
+        private final long eventId;
+        private final Queue<Ticket> tickets = new ArrayDeque<>();
+        private long enqueued;
+        private volatile long processed;
+        private boolean draining;
+        private boolean removed;
+
+        EventQueue(long eventId) {
+            this.eventId = eventId;
+        }
+
+    }
+
+    private static class Ticket {
+
+        private final long id;
+        private final EventQueue queue;
+        private final long eventId;
+        private final long requesterId;
+        private final LocalDateTime created;
+        private final long position;
+        private final CompletableFuture<RequestTicketDto> outcome = new CompletableFuture<>();
+
+        Ticket(long id, EventQueue queue, long requesterId, LocalDateTime created, long position) {
+            this.id = id;
+            this.queue = queue;
+            this.eventId = queue.eventId;
+            this.requesterId = requesterId;
+            this.created = created;
+            this.position = position;
+        }
+
+    }
+
+}
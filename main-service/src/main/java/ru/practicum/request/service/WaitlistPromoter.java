@@ -0,0 +1,126 @@
+package ru.practicum.request.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.event.service.EventSearchCache;
+import ru.practicum.request.model.RequestStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Confirms waitlisted requests when places of an event free up. Cancellations, limit changes and new waitlisted
+ * requests only mark the event; every {@code promote-interval-ms} each marked event is handled once, in its own
+ * transaction, however many places were freed since the previous run: the oldest waitlisted requests take the free places.
+ * Waitlisted requests to events with request moderation are moved to pending instead and do not take places;
+ * only free places that are not already claimed by pending requests are offered, so the initiator decides
+ * on them as on new requests. All events with waitlisted requests are marked on start, so places freed
+ * before a restart are not lost.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class WaitlistPromoter implements InitializingBean {
+
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ParticipationPermits participationPermits;
+    private final EventSearchCache eventSearchCache;
+    private final Set<Long> markedEvents = ConcurrentHashMap.newKeySet();
+
+    @Override
+    public void afterPropertiesSet() {
+        markedEvents.addAll(namedJdbcTemplate.queryForList("SELECT DISTINCT event_id FROM PUBLIC.REQUESTS WHERE status = 'WAITLISTED'",
+                new MapSqlParameterSource(), Long.class));
+    }
+
+    public void mark(long eventId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    markedEvents.add(eventId);
+                }
+            });
+        } else {
+            markedEvents.add(eventId);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${requests.waitlist.promote-interval-ms:1000}")
+    public void promote() {
+        if (markedEvents.isEmpty()) {
+            return;
+        }
+        List<Long> eventIds = new ArrayList<>(markedEvents);
+        markedEvents.removeAll(eventIds);
+        int promoted = 0;
+        for (Long eventId : eventIds) {
+            try {
+                Integer count = transactionTemplate.execute(status -> promote(eventId));
+                if (count != null && count > 0) {
+                    participationPermits.invalidate(eventId);
+                    promoted += count;
+                }
+            } catch (RuntimeException e) {
+                log.warn("Не удалось обработать лист ожидания события {}, повтор при следующем запуске", eventId, e);
+                markedEvents.add(eventId);
+            }
+        }
+        if (promoted > 0) {
+            log.info("Из листа ожидания {} событий переведено {} заявок", eventIds.size(), promoted);
+        }
+    }
+
+    private int promote(long eventId) {
+        MapSqlParameterSource parameters = new MapSqlParameterSource("eventId", eventId);
+        List<Map<String, Object>> events = namedJdbcTemplate.queryForList("SELECT category_id, participant_limit, confirmed_requests,\n" +
+                "request_moderation\n" +
+                "FROM PUBLIC.EVENTS\n" +
+                "WHERE id = :eventId\n" +
+                "FOR UPDATE", parameters);
+        if (events.isEmpty()) {
+            return 0;
+        }
+        Map<String, Object> event = events.get(0);
+        int limit = ((Number) event.get("participant_limit")).intValue();
+        long freePlaces = limit == 0 ? Long.MAX_VALUE : limit - ((Number) event.get("confirmed_requests")).longValue();
+        boolean moderated = limit != 0 && Boolean.TRUE.equals(event.get("request_moderation"));
+        if (moderated && freePlaces > 0) {
+            freePlaces -= namedJdbcTemplate.queryForObject("SELECT COUNT(*)\n" +
+                    "FROM PUBLIC.REQUESTS\n" +
+                    "WHERE event_id = :eventId AND status = 'PENDING'", parameters, Long.class);
+        }
+        if (freePlaces <= 0) {
+            return 0;
+        }
+        RequestStatus status = moderated ? RequestStatus.PENDING : RequestStatus.CONFIRMED;
+        int promoted = namedJdbcTemplate.update("UPDATE PUBLIC.REQUESTS SET status = :status\n" +
+                "WHERE status = 'WAITLISTED' AND id IN (SELECT id\n" +
+                "                                       FROM PUBLIC.REQUESTS\n" +
+                "                                       WHERE event_id = :eventId AND status = 'WAITLISTED'\n" +
+                "                                       ORDER BY id\n" +
+                "                                       LIMIT :places\n" +
+                "                                       FOR UPDATE)", parameters
+                .addValue("status", status.name())
+                .addValue("places", freePlaces));
+        if (promoted > 0 && status == RequestStatus.CONFIRMED) {
+            namedJdbcTemplate.update("UPDATE PUBLIC.EVENTS SET confirmed_requests = confirmed_requests + :count\n" +
+                    "WHERE id = :eventId", parameters.addValue("count", promoted));
+            eventSearchCache.invalidate(List.of(((Number) event.get("category_id")).longValue()));
+        }
+        return promoted;
+    }
+
+}
@@ -21,10 +21,11 @@ public class UserController {
 
     @GetMapping
     public ResponseEntity<List<UserDto>> getAll(@RequestParam(required = false) List<Long> ids,
+                                                @RequestParam(required = false) String after,
                                                 @RequestParam(defaultValue = "0") Integer from,
                                                 @RequestParam(defaultValue = "10") Integer size) {
         log.info("Received GET-request at /admin/users endpoint");
-        return ResponseEntity.ok().body(userService.getAll(ids, from, size));
+        return userService.getAll(ids, after, from, size).toResponse();
     }
 
     @PostMapping
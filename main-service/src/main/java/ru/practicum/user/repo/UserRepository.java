@@ -1,6 +1,6 @@
 package ru.practicum.user.repo;
 
-import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 import ru.practicum.user.model.User;
@@ -13,6 +13,8 @@ public interface UserRepository extends JpaRepository<User, Long> {
 
     Optional<User> findByEmail(String email);
 
-    List<User> findAllByIdIn(List<Long> id, PageRequest pageRequest);
+    List<User> findAllByIdInAndIdGreaterThan(List<Long> id, long afterId, Pageable pageable);
+
+    List<User> findAllByIdGreaterThan(long afterId, Pageable pageable);
 
 }
\ No newline at end of file
@@ -2,12 +2,13 @@ package ru.practicum.user.service;
 
 import ru.practicum.user.dto.NewUserRequest;
 import ru.practicum.user.dto.UserDto;
+import ru.practicum.util.CursorPage;
 
 import java.util.List;
 
 public interface UserService {
 
-    List<UserDto> getAll(List<Long> ids, Integer from, Integer size);
+    CursorPage<UserDto> getAll(List<Long> ids, String after, Integer from, Integer size);
 
     UserDto create(NewUserRequest newUserRequest);
 
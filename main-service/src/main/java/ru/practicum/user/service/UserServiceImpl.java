@@ -13,6 +13,8 @@ import ru.practicum.user.dto.UserDto;
 import ru.practicum.user.mapper.UserMapper;
 import ru.practicum.user.model.User;
 import ru.practicum.user.repo.UserRepository;
+import ru.practicum.util.Cursor;
+import ru.practicum.util.CursorPage;
 
 import java.util.List;
 import java.util.Optional;
@@ -26,18 +28,19 @@ public class UserServiceImpl implements UserService {
     private final UserRepository userRepository;
     private final UserMapper userMapper;
 
-    public List<UserDto> getAll(List<Long> ids, Integer from, Integer size) {
+    public CursorPage<UserDto> getAll(List<Long> ids, String after, Integer from, Integer size) {
         List<User> users;
         validateSearchParameters(from, size);
-        PageRequest pageRequest = PageRequest.of(from, size, Sort.by("id"));
+        long afterId = after != null ? Cursor.decode(after, Cursor.ID_SORT).getId() : 0;
+        PageRequest pageRequest = PageRequest.of(after != null ? 0 : from, size, Sort.by("id"));
         if (ids != null) {
-            users = userRepository.findAllByIdIn(ids, pageRequest);
+            users = userRepository.findAllByIdInAndIdGreaterThan(ids, afterId, pageRequest);
         } else {
-            users = userRepository.findAll(pageRequest).toList();
+            users = userRepository.findAllByIdGreaterThan(afterId, pageRequest);
         }
-        return users.stream()
+        return CursorPage.of(users.stream()
                 .map(userMapper::toUserDto)
-                .collect(Collectors.toList());
+                .collect(Collectors.toList()), size, user -> Cursor.ofId(user.getId()));
     }
 
     private void validateSearchParameters(int from, int size) {
@@ -0,0 +1,79 @@
+package ru.practicum.util;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import ru.practicum.exception.ValidationException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Position in a listing for keyset pagination: the sort key and id of the last row of a page.
+ * Clients get it as an opaque token and pass it back in the {@code after} parameter to read the next page.
+ */
+@Slf4j
+@Getter
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public class Cursor {
+
+    public static final String ID_SORT = "ID";
+
+    private static final String SEPARATOR = "|";
+
+    private final String sort;
+    private final String key;
+    private final long id;
+
+    public static Cursor of(String sort, Object key, long id) {
+        return new Cursor(sort, key != null ? key.toString() : "", id);
+    }
+
+    public static Cursor ofId(long id) {
+        return of(ID_SORT, null, id);
+    }
+
+    /**
+     * Decodes a token issued for the listing sorted by {@code sort}, tokens of other listings are rejected.
+     */
+    public static Cursor decode(String token, String sort) {
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = value.split("\\|", -1);
+            if (parts.length == 3 && parts[0].equals(sort)) {
+                return new Cursor(parts[0], parts[1], Long.parseLong(parts[2]));
+            }
+        } catch (IllegalArgumentException e) {
+            log.debug("Не удалось разобрать курсор {}", token, e);
+        }
+        log.info("Указан неверный курсор {} для сортировки {}", token, sort);
+        throw new ValidationException();
+    }
+
+    public LocalDateTime getDateKey() {
+        try {
+            return LocalDateTime.parse(key);
+        } catch (DateTimeParseException e) {
+            log.info("Указан неверный ключ сортировки {} в курсоре", key);
+            throw new ValidationException();
+        }
+    }
+
+    public long getLongKey() {
+        try {
+            return Long.parseLong(key);
+        } catch (NumberFormatException e) {
+            log.info("Указан неверный ключ сортировки {} в курсоре", key);
+            throw new ValidationException();
+        }
+    }
+
+    public String encode() {
+        String value = sort + SEPARATOR + key + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
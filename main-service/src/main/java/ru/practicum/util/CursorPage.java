@@ -0,0 +1,35 @@
+package ru.practicum.util;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Page of a listing with the cursor of its last row, or without one if there are no more rows.
+ * The cursor is returned to clients in the {@value #NEXT_CURSOR_HEADER} header.
+ */
+@Getter
+@RequiredArgsConstructor
+public class CursorPage<T> {
+
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private final List<T> items;
+    private final Cursor next;
+
+    public static <T> CursorPage<T> of(List<T> items, int size, Function<T, Cursor> cursor) {
+        return new CursorPage<>(items, items.size() < size ? null : cursor.apply(items.get(items.size() - 1)));
+    }
+
+    public ResponseEntity<List<T>> toResponse() {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (next != null) {
+            response.header(NEXT_CURSOR_HEADER, next.encode());
+        }
+        return response.body(items);
+    }
+
+}
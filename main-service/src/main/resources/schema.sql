@@ -35,9 +35,27 @@ CREATE TABLE IF NOT EXISTS events (
   creation_date TIMESTAMP WITHOUT TIME ZONE,
   published_date TIMESTAMP WITHOUT TIME ZONE,
   state VARCHAR(50),
+  views BIGINT NOT NULL DEFAULT 0,
+  confirmed_requests INTEGER NOT NULL DEFAULT 0,
   CONSTRAINT PK_EVENT PRIMARY KEY (id)
 );
 
+ALTER TABLE events ADD COLUMN IF NOT EXISTS views BIGINT NOT NULL DEFAULT 0;
+
+ALTER TABLE events ADD COLUMN IF NOT EXISTS confirmed_requests INTEGER NOT NULL DEFAULT 0;
+
+ALTER TABLE events ADD COLUMN IF NOT EXISTS rush_mode BOOL NOT NULL DEFAULT FALSE;
+
+CREATE INDEX IF NOT EXISTS IX_EVENTS_PUBLISHED_VIEWS ON events (views DESC, id) WHERE state = 'PUBLISHED';
+
+CREATE INDEX IF NOT EXISTS IX_EVENTS_PUBLISHED_EVENT_DATE ON events (event_date, id) WHERE state = 'PUBLISHED';
+
+CREATE INDEX IF NOT EXISTS IX_EVENTS_INITIATOR ON events (initiator_id, id);
+
+CREATE INDEX IF NOT EXISTS IX_EVENTS_STATE_EVENT_DATE ON events (state, event_date);
+
+CREATE INDEX IF NOT EXISTS IX_EVENTS_CATEGORY ON events (category_id);
+
 CREATE TABLE IF NOT EXISTS requests (
   id BIGINT GENERATED BY DEFAULT AS IDENTITY,
   event_id BIGINT REFERENCES events(id),
@@ -47,6 +65,10 @@ CREATE TABLE IF NOT EXISTS requests (
   CONSTRAINT PK_REQUEST PRIMARY KEY (id)
 );
 
+CREATE UNIQUE INDEX IF NOT EXISTS UQ_REQUESTS_EVENT_REQUESTER ON requests (event_id, requester_id);
+
+CREATE INDEX IF NOT EXISTS IX_REQUESTS_WAITLISTED ON requests (event_id, id) WHERE status = 'WAITLISTED';
+
 CREATE TABLE IF NOT EXISTS compilations (
   id BIGINT GENERATED BY DEFAULT AS IDENTITY,
   title VARCHAR(255),
@@ -54,6 +76,8 @@ CREATE TABLE IF NOT EXISTS compilations (
   CONSTRAINT PK_COMPILATION PRIMARY KEY (id)
 );
 
+CREATE INDEX IF NOT EXISTS IX_COMPILATIONS_PINNED ON compilations (pinned, id);
+
 CREATE TABLE IF NOT EXISTS compilation_events (
   compilation_id BIGINT REFERENCES compilations(id) NOT NULL,
   event_id BIGINT REFERENCES events(id) NOT NULL,
@@ -0,0 +1,47 @@
+package ru.practicum.event.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Timing test of {@link EventGeoIndex#search} over a million points: half of them spread over the world
+ * and half crowded around ten cities. Timings are only logged, so it runs with the benchmark profile:
+ * {@code mvn -Pbenchmark test -pl main-service}. Results are checked against a full scan by {@link EventGeoIndexTest}.
+ */
+@Slf4j
+@Tag("benchmark")
+class EventGeoIndexBenchmarkTest {
+
+    private static final int POINTS = 1_000_000;
+    private static final int SEARCHES = 1_000;
+
+    private final EventGeoIndexTest points = new EventGeoIndexTest();
+
+    @Test
+    void search() {
+        float[][] locations = points.points(POINTS);
+        long start = System.nanoTime();
+        EventGeoIndex index = EventGeoIndexTest.index(locations);
+        log.info("EventGeoIndex.update: {} точек за {} мс", POINTS, (System.nanoTime() - start) / 1_000_000);
+
+        for (double radius : new double[]{1, 10, 50}) {
+            List<float[]> centers = IntStream.range(0, SEARCHES)
+                    .mapToObj(i -> i % 2 == 0 ? points.worldPoint() : points.cityPoint())
+                    .collect(Collectors.toList());
+            long found = 0;
+            start = System.nanoTime();
+            for (float[] center : centers) {
+                found += index.search(center[0], center[1], radius).size();
+            }
+            long elapsed = System.nanoTime() - start;
+            log.info("EventGeoIndex.search: радиус {} км, {} поисков за {} мс, {} мкс на поиск, в среднем {} событий",
+                    radius, SEARCHES, elapsed / 1_000_000, elapsed / SEARCHES / 1_000, found / SEARCHES);
+        }
+    }
+
+}
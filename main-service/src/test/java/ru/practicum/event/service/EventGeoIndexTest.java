@@ -0,0 +1,108 @@
+package ru.practicum.event.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import ru.practicum.event.model.Event;
+import ru.practicum.event.model.EventState;
+import ru.practicum.location.model.Location;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+/**
+ * Compares {@link EventGeoIndex#search} with a full scan over points spread over the world and crowded around cities.
+ */
+class EventGeoIndexTest {
+
+    private static final int POINTS = 5_000;
+    private static final int SEARCHES = 200;
+    private static final double[] CITY_LATS = {55.75, 59.94, 51.51, 40.71, 35.68, -23.55, 28.61, -33.87, 30.04, 19.43};
+    private static final double[] CITY_LONS = {37.62, 30.31, -0.13, -74.01, 139.69, -46.63, 77.21, 151.21, 31.24, -99.13};
+    private static final double EARTH_RADIUS_KM = 6371.0088;
+
+    private final Random random = new Random(42);
+
+    @Test
+    void searchMatchesScanInDistanceOrder() {
+        float[][] points = points(POINTS);
+        EventGeoIndex index = index(points);
+        for (double radius : new double[]{1, 10, 50, 500}) {
+            for (int i = 0; i < SEARCHES; i++) {
+                float[] center = i % 2 == 0 ? worldPoint() : cityPoint();
+                Assertions.assertEquals(scan(points, center[0], center[1], radius),
+                        index.search(center[0], center[1], radius));
+            }
+        }
+    }
+
+    @Test
+    void searchSkipsUnpublishedEvents() {
+        EventGeoIndex index = new EventGeoIndex(null, 0.1);
+        index.update(event(1, EventState.PUBLISHED, 55.75f, 37.62f));
+        index.update(event(2, EventState.PENDING, 55.75f, 37.62f));
+        index.update(event(3, EventState.PUBLISHED, 55.76f, 37.62f));
+        index.update(event(3, EventState.CANCELED, 55.76f, 37.62f));
+        Assertions.assertEquals(List.of(1L), index.search(55.75, 37.62, 10));
+    }
+
+    float[][] points(int count) {
+        float[][] points = new float[count][];
+        for (int i = 0; i < count; i++) {
+            points[i] = i % 2 == 0 ? worldPoint() : cityPoint();
+        }
+        return points;
+    }
+
+    float[] worldPoint() {
+        return new float[]{(float) (random.nextDouble() * 160 - 80), (float) (random.nextDouble() * 360 - 180)};
+    }
+
+    float[] cityPoint() {
+        int city = random.nextInt(CITY_LATS.length);
+        return new float[]{(float) (CITY_LATS[city] + random.nextGaussian() * 0.5),
+                (float) (CITY_LONS[city] + random.nextGaussian() * 0.8)};
+    }
+
+    static EventGeoIndex index(float[][] points) {
+        EventGeoIndex index = new EventGeoIndex(null, 0.1);
+        for (int i = 0; i < points.length; i++) {
+            index.update(event(i, EventState.PUBLISHED, points[i][0], points[i][1]));
+        }
+        return index;
+    }
+
+    private static Event event(long id, EventState state, float lat, float lon) {
+        return Event.builder()
+                .id(id)
+                .state(state)
+                .location(Location.builder().lat(lat).lon(lon).build())
+                .build();
+    }
+
+    static List<Long> scan(float[][] points, double lat, double lon, double radius) {
+        Map<Long, Double> distances = new HashMap<>();
+        for (int i = 0; i < points.length; i++) {
+            double distance = getDistance(lat, lon, points[i][0], points[i][1]);
+            if (distance <= radius) {
+                distances.put((long) i, distance);
+            }
+        }
+        return distances.entrySet().stream()
+                .sorted(Map.Entry.<Long, Double>comparingByValue()
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+    }
+
+    private static double getDistance(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) +
+                Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+}
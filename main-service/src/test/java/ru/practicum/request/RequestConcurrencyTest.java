@@ -0,0 +1,130 @@
+package ru.practicum.request;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import ru.practicum.exception.ConflictException;
+import ru.practicum.request.service.RequestService;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends many more concurrent participation requests than an event has places and checks that exactly
+ * {@code participant_limit} of them are confirmed, both in the counter on the event and in the requests table.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@Testcontainers(disabledWithoutDocker = true)
+class RequestConcurrencyTest {
+
+    private static final int PARTICIPANT_LIMIT = 25;
+    private static final int REQUESTERS = 400;
+    private static final int THREADS = 64;
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:14-alpine");
+
+    @Autowired
+    private RequestService requestService;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    @DynamicPropertySource
+    static void datasourceProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", POSTGRES::getJdbcUrl);
+        registry.add("spring.datasource.username", POSTGRES::getUsername);
+        registry.add("spring.datasource.password", POSTGRES::getPassword);
+    }
+
+    @Test
+    void createUserRequestConfirmsNoMoreThanParticipantLimit() throws Exception {
+        long eventId = createEvent();
+        List<Long> requesterIds = namedJdbcTemplate.queryForList("SELECT id FROM PUBLIC.USERS WHERE name LIKE 'requester%'",
+                new MapSqlParameterSource(), Long.class);
+        AtomicInteger confirmed = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (Long requesterId : requesterIds) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        requestService.createUserRequest(requesterId, eventId, false);
+                        confirmed.incrementAndGet();
+                    } catch (ConflictException e) {
+                        rejected.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        MapSqlParameterSource parameters = new MapSqlParameterSource("eventId", eventId);
+        Assertions.assertEquals(REQUESTERS, requesterIds.size());
+        Assertions.assertEquals(PARTICIPANT_LIMIT, confirmed.get());
+        Assertions.assertEquals(REQUESTERS - PARTICIPANT_LIMIT, rejected.get());
+        Assertions.assertEquals(PARTICIPANT_LIMIT, namedJdbcTemplate.queryForObject("SELECT confirmed_requests\n" +
+                "FROM PUBLIC.EVENTS\n" +
+                "WHERE id = :eventId", parameters, Integer.class));
+        Assertions.assertEquals(PARTICIPANT_LIMIT, namedJdbcTemplate.queryForObject("SELECT COUNT(*)\n" +
+                "FROM PUBLIC.REQUESTS\n" +
+                "WHERE event_id = :eventId AND status = 'CONFIRMED'", parameters, Integer.class));
+        Assertions.assertEquals(PARTICIPANT_LIMIT, namedJdbcTemplate.queryForObject("SELECT COUNT(*)\n" +
+                "FROM PUBLIC.REQUESTS\n" +
+                "WHERE event_id = :eventId", parameters, Integer.class));
+    }
+
+    private long createEvent() {
+        MapSqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("requesters", REQUESTERS)
+                .addValue("limit", PARTICIPANT_LIMIT)
+                .addValue("now", LocalDateTime.now())
+                .addValue("eventDate", LocalDateTime.now().plusDays(7));
+        namedJdbcTemplate.update("INSERT INTO PUBLIC.USERS (name, email)\n" +
+                "SELECT 'requester' || i, 'requester' || i || '@mail.ru'\n" +
+                "FROM generate_series(1, :requesters) AS i", parameters);
+        Long initiatorId = namedJdbcTemplate.queryForObject("INSERT INTO PUBLIC.USERS (name, email)\n" +
+                "VALUES ('initiator', 'initiator@mail.ru')\n" +
+                "RETURNING id", parameters, Long.class);
+        Long categoryId = namedJdbcTemplate.queryForObject("INSERT INTO PUBLIC.CATEGORIES (name)\n" +
+                "VALUES ('concerts')\n" +
+                "RETURNING id", parameters, Long.class);
+        Long locationId = namedJdbcTemplate.queryForObject("INSERT INTO PUBLIC.LOCATIONS (lat, lon)\n" +
+                "VALUES (55.75, 37.62)\n" +
+                "RETURNING id", parameters, Long.class);
+        return namedJdbcTemplate.queryForObject("INSERT INTO PUBLIC.EVENTS (annotation, paid, description, event_date,\n" +
+                "location_id, category_id, participant_limit, request_moderation, title, initiator_id, creation_date,\n" +
+                "published_date, state)\n" +
+                "VALUES ('annotation', FALSE, 'description', :eventDate, :locationId, :categoryId, :limit, FALSE,\n" +
+                "'title', :initiatorId, :now, :now, 'PUBLISHED')\n" +
+                "RETURNING id", parameters
+                .addValue("locationId", locationId)
+                .addValue("categoryId", categoryId)
+                .addValue("initiatorId", initiatorId), Long.class);
+    }
+
+}
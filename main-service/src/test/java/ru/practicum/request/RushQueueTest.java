@@ -0,0 +1,208 @@
+package ru.practicum.request;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import ru.practicum.event.service.EventSearchCache;
+import ru.practicum.exception.ConflictException;
+import ru.practicum.request.dto.RequestTicketDto;
+import ru.practicum.request.model.TicketStatus;
+import ru.practicum.request.service.ParticipationPermits;
+import ru.practicum.request.service.RequestService;
+import ru.practicum.request.service.RushQueue;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Enqueues many more participation requests to an event in rush mode than it has places, each requester twice
+ * and the initiator too, and checks that exactly {@code participant_limit} tickets are confirmed, the rest are
+ * rejected, and the requests table and the counter on the event agree. Also checks that tickets queued when
+ * the queue is shut down are processed rather than dropped.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@Testcontainers(disabledWithoutDocker = true)
+class RushQueueTest {
+
+    private static final int PARTICIPANT_LIMIT = 25;
+    private static final int REQUESTERS = 400;
+    private static final int THREADS = 64;
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:14-alpine");
+
+    @Autowired
+    private RequestService requestService;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ParticipationPermits participationPermits;
+
+    @Autowired
+    private EventSearchCache eventSearchCache;
+
+    @DynamicPropertySource
+    static void datasourceProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", POSTGRES::getJdbcUrl);
+        registry.add("spring.datasource.username", POSTGRES::getUsername);
+        registry.add("spring.datasource.password", POSTGRES::getPassword);
+    }
+
+    @Test
+    void enqueueConfirmsNoMoreThanParticipantLimit() throws Exception {
+        TestEvent event = createEvent("rush");
+        List<Long> requesterIds = new ArrayList<>(event.requesterIds);
+        requesterIds.addAll(event.requesterIds);
+        requesterIds.add(event.initiatorId);
+        Collections.shuffle(requesterIds);
+        List<RequestTicketDto> tickets = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (Long requesterId : requesterIds) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    tickets.add(requestService.enqueueUserRequest(requesterId, event.id));
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        List<RequestTicketDto> outcomes = new ArrayList<>();
+        for (RequestTicketDto ticket : tickets) {
+            outcomes.add(awaitOutcome(ticket));
+        }
+        Map<TicketStatus, Long> statuses = outcomes.stream()
+                .collect(Collectors.groupingBy(RequestTicketDto::getStatus, Collectors.counting()));
+        Assertions.assertEquals(Map.of(TicketStatus.CONFIRMED, (long) PARTICIPANT_LIMIT,
+                TicketStatus.REJECTED, (long) requesterIds.size() - PARTICIPANT_LIMIT), statuses);
+        List<Long> confirmedRequesters = outcomes.stream()
+                .filter(ticket -> ticket.getStatus() == TicketStatus.CONFIRMED)
+                .map(RequestTicketDto::getRequester)
+                .distinct()
+                .collect(Collectors.toList());
+        Assertions.assertEquals(PARTICIPANT_LIMIT, confirmedRequesters.size());
+        Assertions.assertFalse(confirmedRequesters.contains(event.initiatorId));
+        assertConfirmed(event.id, PARTICIPANT_LIMIT);
+    }
+
+    @Test
+    void destroyDrainsQueuedTickets() throws Exception {
+        TestEvent event = createEvent("shutdown");
+        RushQueue rushQueue = new RushQueue(namedJdbcTemplate, transactionTemplate, participationPermits, eventSearchCache,
+                new SimpleMeterRegistry(), 1, 10, 100_000, 600_000, 30_000, 60_000);
+        List<RequestTicketDto> tickets = new ArrayList<>();
+        for (Long requesterId : event.requesterIds) {
+            tickets.add(rushQueue.enqueue(requesterId, event.id));
+        }
+        rushQueue.destroy();
+
+        Assertions.assertThrows(ConflictException.class, () -> rushQueue.enqueue(event.initiatorId, event.id));
+        Map<TicketStatus, Long> statuses = tickets.stream()
+                .map(ticket -> rushQueue.getTicket(ticket.getRequester(), ticket.getId(), 0))
+                .collect(Collectors.groupingBy(RequestTicketDto::getStatus, Collectors.counting()));
+        Assertions.assertEquals(Map.of(TicketStatus.CONFIRMED, (long) PARTICIPANT_LIMIT,
+                TicketStatus.REJECTED, (long) REQUESTERS - PARTICIPANT_LIMIT), statuses);
+        assertConfirmed(event.id, PARTICIPANT_LIMIT);
+    }
+
+    private RequestTicketDto awaitOutcome(RequestTicketDto ticket) {
+        long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(1);
+        RequestTicketDto outcome = ticket;
+        while (outcome.getStatus() == TicketStatus.QUEUED && System.nanoTime() < deadline) {
+            outcome = requestService.getUserRequestTicket(ticket.getRequester(), ticket.getId(), 10_000L);
+        }
+        return outcome;
+    }
+
+    private void assertConfirmed(long eventId, int count) {
+        MapSqlParameterSource parameters = new MapSqlParameterSource("eventId", eventId);
+        Assertions.assertEquals(count, namedJdbcTemplate.queryForObject("SELECT confirmed_requests\n" +
+                "FROM PUBLIC.EVENTS\n" +
+                "WHERE id = :eventId", parameters, Integer.class));
+        Assertions.assertEquals(count, namedJdbcTemplate.queryForObject("SELECT COUNT(*)\n" +
+                "FROM PUBLIC.REQUESTS\n" +
+                "WHERE event_id = :eventId AND status = 'CONFIRMED'", parameters, Integer.class));
+        Assertions.assertEquals(count, namedJdbcTemplate.queryForObject("SELECT COUNT(*)\n" +
+                "FROM PUBLIC.REQUESTS\n" +
+                "WHERE event_id = :eventId", parameters, Integer.class));
+    }
+
+    private TestEvent createEvent(String name) {
+        MapSqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("name", name)
+                .addValue("requesters", REQUESTERS)
+                .addValue("limit", PARTICIPANT_LIMIT)
+                .addValue("now", LocalDateTime.now())
+                .addValue("eventDate", LocalDateTime.now().plusDays(7));
+        List<Long> requesterIds = namedJdbcTemplate.queryForList("INSERT INTO PUBLIC.USERS (name, email)\n" +
+                "SELECT :name || '-requester' || i, :name || '-requester' || i || '@mail.ru'\n" +
+                "FROM generate_series(1, :requesters) AS i\n" +
+                "RETURNING id", parameters, Long.class);
+        Long initiatorId = namedJdbcTemplate.queryForObject("INSERT INTO PUBLIC.USERS (name, email)\n" +
+                "VALUES (:name || '-initiator', :name || '-initiator@mail.ru')\n" +
+                "RETURNING id", parameters, Long.class);
+        Long categoryId = namedJdbcTemplate.queryForObject("INSERT INTO PUBLIC.CATEGORIES (name)\n" +
+                "VALUES (:name)\n" +
+                "RETURNING id", parameters, Long.class);
+        Long locationId = namedJdbcTemplate.queryForObject("INSERT INTO PUBLIC.LOCATIONS (lat, lon)\n" +
+                "VALUES (55.75, 37.62)\n" +
+                "RETURNING id", parameters, Long.class);
+        Long eventId = namedJdbcTemplate.queryForObject("INSERT INTO PUBLIC.EVENTS (annotation, paid, description, event_date,\n" +
+                "location_id, category_id, participant_limit, request_moderation, title, initiator_id, creation_date,\n" +
+                "published_date, state, rush_mode)\n" +
+                "VALUES ('annotation', FALSE, 'description', :eventDate, :locationId, :categoryId, :limit, FALSE,\n" +
+                "'title', :initiatorId, :now, :now, 'PUBLISHED', TRUE)\n" +
+                "RETURNING id", parameters
+                .addValue("locationId", locationId)
+                .addValue("categoryId", categoryId)
+                .addValue("initiatorId", initiatorId), Long.class);
+        return new TestEvent(eventId, initiatorId, requesterIds);
+    }
+
+    private static class TestEvent {
+
+        private final long id;
+        private final long initiatorId;
+        private final List<Long> requesterIds;
+
+        TestEvent(long id, long initiatorId, List<Long> requesterIds) {
+            this.id = id;
+            this.initiatorId = initiatorId;
+            this.requesterIds = requesterIds;
+        }
+
+    }
+
+}
@@ -9,23 +9,30 @@ import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.web.util.DefaultUriBuilderFactory;
 
+import java.util.List;
+
 @Service
 public class HitClient extends BaseClient {
 
     private static final String API_HIT_PREFIX = "/hit";
+    private static final String API_HITS_PREFIX = "/hits";
 
     @Autowired
     public HitClient(@Value("${ewm-stats.url}") String serverUrl, RestTemplateBuilder builder) {
         super(
                 builder
-                        .uriTemplateHandler(new DefaultUriBuilderFactory(serverUrl + API_HIT_PREFIX))
+                        .uriTemplateHandler(new DefaultUriBuilderFactory(serverUrl))
                         .requestFactory(HttpComponentsClientHttpRequestFactory::new)
                         .build()
         );
     }
 
     public ResponseEntity<Object> postHit(EndpointHitDto endpointHitDto) {
-        return post("", null, endpointHitDto);
+        return post(API_HIT_PREFIX, null, endpointHitDto);
+    }
+
+    public ResponseEntity<Object> postHits(List<EndpointHitDto> endpointHitDtos) {
+        return post(API_HITS_PREFIX, null, endpointHitDtos);
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,8 @@
+package ru.practicum.client;
+
+public enum HitOverflowPolicy {
+
+    DROP,
+    BLOCK
+
+}
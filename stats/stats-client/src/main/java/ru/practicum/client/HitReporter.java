@@ -0,0 +1,169 @@
+package ru.practicum.client;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import ru.practicum.hit.dto.EndpointHitDto;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reports hits to stats-server. In async mode hits are put into a bounded queue and sent
+ * by a background flusher in batches of {@code batch-size} or every {@code flush-interval-ms},
+ * whichever comes first. When the queue is full the hit is either dropped or the caller
+ * is blocked, depending on {@code overflow-policy}. Remaining hits are sent on shutdown.
+ */
+@Slf4j
+@Service
+public class HitReporter implements InitializingBean, DisposableBean {
+
+    private final HitClient hitClient;
+    private final boolean async;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final long shutdownTimeoutMs;
+    private final HitOverflowPolicy overflowPolicy;
+    private final BlockingQueue<EndpointHitDto> queue;
+    private final Counter droppedHits;
+    private final Counter sentHits;
+    private final Timer flushLatency;
+    private volatile boolean running;
+    private Thread flusher;
+
+    public HitReporter(HitClient hitClient,
+                       ObjectProvider<MeterRegistry> meterRegistryProvider,
+                       @Value("${ewm-stats.reporter.async:true}") boolean async,
+                       @Value("${ewm-stats.reporter.queue-capacity:10000}") int queueCapacity,
+                       @Value("${ewm-stats.reporter.batch-size:100}") int batchSize,
+                       @Value("${ewm-stats.reporter.flush-interval-ms:1000}") long flushIntervalMs,
+                       @Value("${ewm-stats.reporter.shutdown-timeout-ms:5000}") long shutdownTimeoutMs,
+                       @Value("${ewm-stats.reporter.overflow-policy:DROP}") HitOverflowPolicy overflowPolicy) {
+        this.hitClient = hitClient;
+        this.async = async;
+        this.batchSize = batchSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.shutdownTimeoutMs = shutdownTimeoutMs;
+        this.overflowPolicy = overflowPolicy;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        MeterRegistry meterRegistry = meterRegistryProvider.getIfAvailable(SimpleMeterRegistry::new);
+        Gauge.builder("ewm.stats.reporter.queue.depth", queue, BlockingQueue::size)
+                .description("Hits waiting to be sent to stats-server")
+                .register(meterRegistry);
+        this.droppedHits = Counter.builder("ewm.stats.reporter.hits.dropped")
+                .description("Hits dropped because the queue was full or stats-server was unavailable")
+                .register(meterRegistry);
+        this.sentHits = Counter.builder("ewm.stats.reporter.hits.sent")
+                .description("Hits sent to stats-server")
+                .register(meterRegistry);
+        this.flushLatency = Timer.builder("ewm.stats.reporter.flush.latency")
+                .description("Time spent sending one batch of hits to stats-server")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (!async) {
+            return;
+        }
+        running = true;
+        flusher = new Thread(this::runFlusher, "hit-reporter-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    public void report(EndpointHitDto endpointHitDto) {
+        if (!async) {
+            ResponseEntity<Object> response = hitClient.postHit(endpointHitDto);
+            log.info("Добавлена статистика {}", response);
+            return;
+        }
+        if (overflowPolicy == HitOverflowPolicy.BLOCK) {
+            try {
+                queue.put(endpointHitDto);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                droppedHits.increment();
+            }
+        } else if (!queue.offer(endpointHitDto)) {
+            droppedHits.increment();
+            log.warn("Очередь статистики переполнена, просмотр {} отброшен", endpointHitDto);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (!async) {
+            return;
+        }
+        running = false;
+        try {
+            flusher.join(shutdownTimeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<EndpointHitDto> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            flush(batch);
+        }
+    }
+
+    private void runFlusher() {
+        List<EndpointHitDto> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                EndpointHitDto first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+                while (batch.size() < batchSize) {
+                    if (queue.drainTo(batch, batchSize - batch.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    EndpointHitDto next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void flush(List<EndpointHitDto> batch) {
+        try {
+            ResponseEntity<Object> response = flushLatency.record(() -> hitClient.postHits(batch));
+            if (response != null && response.getStatusCode().is2xxSuccessful()) {
+                sentHits.increment(batch.size());
+            } else {
+                droppedHits.increment(batch.size());
+                log.warn("Сервер статистики отклонил пакет из {} просмотров: {}", batch.size(), response);
+            }
+        } catch (RuntimeException e) {
+            droppedHits.increment(batch.size());
+            log.warn("Не удалось отправить пакет из {} просмотров на сервер статистики", batch.size(), e);
+        } finally {
+            batch.clear();
+        }
+    }
+
+}
@@ -1,19 +1,31 @@
 package ru.practicum.client;
 
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClientException;
 import org.springframework.web.util.DefaultUriBuilderFactory;
+import ru.practicum.stats.dto.ViewStatsDto;
+import ru.practicum.stats.dto.ViewStatsRequestDto;
 
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.stream.Collectors;
 
+@Slf4j
 @Service
 public class StatClient extends BaseClient {
 
     private static final String API_STATS_PREFIX = "/stats";
+    private static final String EVENT_URI_PREFIX = "/events/";
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
     @Autowired
     public StatClient(@Value("${ewm-stats.url}") String serverUrl, RestTemplateBuilder builder) {
@@ -42,4 +54,54 @@ public class StatClient extends BaseClient {
         return get(path, parameters);
     }
 
-}
\ No newline at end of file
+    /**
+     * Returns views of /events/{id} for every given event in a single request. Events without views,
+     * and all events if stats-server can't be reached, get 0.
+     */
+    public Map<Long, Long> getViews(Collection<Long> eventIds, LocalDateTime start, LocalDateTime end, boolean unique) {
+        try {
+            return fetchViews(eventIds, start, end, unique);
+        } catch (RestClientException e) {
+            log.warn("Не удалось получить просмотры {} событий от сервера статистики", eventIds.size(), e);
+            Map<Long, Long> views = new HashMap<>();
+            eventIds.forEach(eventId -> views.put(eventId, 0L));
+            return views;
+        }
+    }
+
+    /**
+     * Same as {@link #getViews}, but fails with {@link RestClientException} if stats-server can't be reached.
+     */
+    public Map<Long, Long> fetchViews(Collection<Long> eventIds, LocalDateTime start, LocalDateTime end, boolean unique) {
+        Map<Long, Long> views = new HashMap<>();
+        if (eventIds.isEmpty()) {
+            return views;
+        }
+        eventIds.forEach(eventId -> views.put(eventId, 0L));
+        ViewStatsRequestDto request = ViewStatsRequestDto.builder()
+                .start(start.format(DATE_FORMAT))
+                .end(end.format(DATE_FORMAT))
+                .uris(views.keySet().stream()
+                        .map(eventId -> EVENT_URI_PREFIX + eventId)
+                        .collect(Collectors.toList()))
+                .unique(unique)
+                .build();
+        ViewStatsDto[] stats = rest.postForObject("", request, ViewStatsDto[].class);
+        if (stats == null) {
+            return views;
+        }
+        for (ViewStatsDto viewStats : stats) {
+            String uri = viewStats.getUri();
+            if (uri == null || !uri.startsWith(EVENT_URI_PREFIX)) {
+                continue;
+            }
+            try {
+                views.merge(Long.parseLong(uri.substring(EVENT_URI_PREFIX.length())), (long) viewStats.getHits(), Long::sum);
+            } catch (NumberFormatException e) {
+                log.debug("Пропущена статистика для адреса {}", uri);
+            }
+        }
+        return views;
+    }
+
+}
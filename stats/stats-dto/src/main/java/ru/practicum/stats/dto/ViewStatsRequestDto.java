@@ -0,0 +1,17 @@
+package ru.practicum.stats.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class ViewStatsRequestDto {
+
+    private String start;
+    private String end;
+    private List<String> uris;
+    private Boolean unique;
+
+}
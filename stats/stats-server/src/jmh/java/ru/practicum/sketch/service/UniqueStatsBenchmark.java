@@ -0,0 +1,125 @@
+package ru.practicum.sketch.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import ru.practicum.StatServer;
+import ru.practicum.hit.model.StatsQuery;
+import ru.practicum.hit.service.HitService;
+import ru.practicum.stats.dto.ViewStatsDto;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares unique stats estimated from hourly HLL sketches with the exact COUNT(DISTINCT ip) over raw hits
+ * on a generated week of hits. Run with {@code mvn -Pbenchmark verify -pl stats/stats-server -am};
+ * needs Docker for the PostgreSQL container.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class UniqueStatsBenchmark {
+
+    private static final int DAYS = 7;
+    private static final int LIMIT = 10;
+
+    @Param({"1000000"})
+    private int hits;
+
+    @Param({"100"})
+    private int uris;
+
+    @Param({"100000"})
+    private int ips;
+
+    private PostgreSQLContainer<?> postgres;
+    private ConfigurableApplicationContext context;
+    private SketchService sketchService;
+    private HitService hitService;
+    private LocalDateTime start;
+    private LocalDateTime end;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        postgres = new PostgreSQLContainer<>("postgres:14-alpine");
+        postgres.start();
+        context = new SpringApplicationBuilder(StatServer.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.datasource.url=" + postgres.getJdbcUrl(),
+                        "spring.datasource.username=" + postgres.getUsername(),
+                        "spring.datasource.password=" + postgres.getPassword(),
+                        "spring.jpa.show-sql=false",
+                        "spring.jpa.properties.hibernate.show_sql=false",
+                        "stats.cache.enabled=false",
+                        "stats.visitors.enabled=false")
+                .run();
+        sketchService = context.getBean(SketchService.class);
+        hitService = context.getBean(HitService.class);
+        end = LocalDateTime.now().truncatedTo(ChronoUnit.DAYS);
+        start = end.minusDays(DAYS);
+        generateHits(context.getBean(NamedParameterJdbcTemplate.class));
+        sketchService.backfill();
+    }
+
+    private void generateHits(NamedParameterJdbcTemplate namedJdbcTemplate) {
+        MapSqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("hits", hits)
+                .addValue("uris", uris)
+                .addValue("ips", ips)
+                .addValue("start", start)
+                .addValue("seconds", DAYS * 24 * 60 * 60);
+        namedJdbcTemplate.update("INSERT INTO apps (app) VALUES ('ewm-main-service')", parameters);
+        namedJdbcTemplate.update("INSERT INTO uris (uri)\n" +
+                "SELECT '/events/' || n FROM generate_series(1, :uris) AS n", parameters);
+        namedJdbcTemplate.update("INSERT INTO public.hits (app_id, uri_id, ip, created_date)\n" +
+                "SELECT (SELECT id FROM apps WHERE app = 'ewm-main-service'),\n" +
+                "       (SELECT MIN(id) FROM uris) + n % :uris,\n" +
+                "       '10.0.0.0'::inet + (random() * (:ips - 1))::int,\n" +
+                "       CAST(:start AS TIMESTAMP) + make_interval(secs => (random() * (:seconds - 1))::int)\n" +
+                "FROM generate_series(1, :hits) AS n", parameters);
+        namedJdbcTemplate.getJdbcTemplate().execute("ANALYZE public.hits");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (context != null) {
+            context.close();
+        }
+        if (postgres != null) {
+            postgres.stop();
+        }
+    }
+
+    @Benchmark
+    public List<ViewStatsDto> sketches() {
+        return sketchService.getUniqueStats(start, end, null, LIMIT);
+    }
+
+    @Benchmark
+    public List<ViewStatsDto> countDistinct() {
+        return hitService.getStats(new StatsQuery(start, end, null, true, false, LIMIT));
+    }
+
+}
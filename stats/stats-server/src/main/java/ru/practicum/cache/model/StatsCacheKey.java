@@ -0,0 +1,14 @@
+package ru.practicum.cache.model;
+
+import lombok.Data;
+import ru.practicum.hit.model.StatsQuery;
+
+import java.util.List;
+
+@Data
+public class StatsCacheKey {
+
+    private final StatsQuery query;
+    private final List<Long> versions;
+
+}
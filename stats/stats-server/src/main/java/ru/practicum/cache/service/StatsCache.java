@@ -0,0 +1,123 @@
+package ru.practicum.cache.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.cache.model.StatsCacheKey;
+import ru.practicum.hit.model.StatsQuery;
+import ru.practicum.rollup.model.Granularity;
+import ru.practicum.stats.dto.ViewStatsDto;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Size-bounded cache of /stats results. Queries are snapped outwards to whole {@code granularity} buckets,
+ * so requests like "now - 1 month .. now + 1 month" share one entry for the whole bucket.
+ * Every ingested hit bumps the version of its uri and the global version. The versions are part of the key,
+ * so entries computed before a hit are no longer found and age out by size or after {@code ttl-ms}.
+ * Versions are bumped after the ingesting transaction commits, so a result cached under the new versions
+ * always includes the hit. Uri versions are kept in {@code version-stripes} counters chosen by the hash of the uri:
+ * memory stays fixed however many uris are hit, and uris sharing a stripe only invalidate each other's entries.
+ * Counters never go back, so an entry is never found under the versions of an older result.
+ */
+@Component
+public class StatsCache {
+
+    private final boolean enabled;
+    private final Granularity granularity;
+    private final Cache<StatsCacheKey, List<ViewStatsDto>> cache;
+    private final AtomicLong globalVersion = new AtomicLong();
+    private final AtomicLongArray uriVersions;
+
+    public StatsCache(MeterRegistry meterRegistry,
+                      @Value("${stats.cache.enabled:true}") boolean enabled,
+                      @Value("${stats.cache.granularity:MINUTE}") Granularity granularity,
+                      @Value("${stats.cache.max-size:10000}") long maxSize,
+                      @Value("${stats.cache.ttl-ms:60000}") long ttlMs,
+                      @Value("${stats.cache.version-stripes:65536}") int versionStripes) {
+        this.enabled = enabled;
+        this.granularity = granularity;
+        this.uriVersions = new AtomicLongArray(versionStripes);
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(ttlMs))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "stats");
+        Gauge.builder("stats.cache.hit.ratio", cache, c -> c.stats().hitRate())
+                .description("Share of /stats requests answered from the result cache")
+                .register(meterRegistry);
+    }
+
+    public StatsQuery normalize(StatsQuery query) {
+        if (!enabled) {
+            return query;
+        }
+        List<String> sortedUris = query.getUris() == null ? null : query.getUris().stream()
+                .distinct()
+                .sorted()
+                .collect(Collectors.toList());
+        return new StatsQuery(granularity.floor(query.getStart()),
+                granularity.ceil(query.getEnd()),
+                sortedUris,
+                query.isUnique(),
+                query.isApprox(),
+                query.getLimit());
+    }
+
+    public List<ViewStatsDto> get(StatsQuery query, Function<StatsQuery, List<ViewStatsDto>> loader) {
+        if (!enabled) {
+            return loader.apply(query);
+        }
+        return cache.get(new StatsCacheKey(query, getVersions(query)), key -> loader.apply(query));
+    }
+
+    public void invalidate(Collection<String> uris) {
+        if (!enabled) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    bumpVersions(uris);
+                }
+            });
+        } else {
+            bumpVersions(uris);
+        }
+    }
+
+    private void bumpVersions(Collection<String> uris) {
+        globalVersion.incrementAndGet();
+        for (String uri : uris) {
+            uriVersions.incrementAndGet(getStripe(uri));
+        }
+    }
+
+    private List<Long> getVersions(StatsQuery query) {
+        if (query.getUris() == null) {
+            return List.of(globalVersion.get());
+        }
+        return query.getUris().stream()
+                .map(uri -> uriVersions.get(getStripe(uri)))
+                .collect(Collectors.toList());
+    }
+
+    private int getStripe(String uri) {
+        return Math.floorMod(uri.hashCode(), uriVersions.length());
+    }
+
+}
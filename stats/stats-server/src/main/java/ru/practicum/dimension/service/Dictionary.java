@@ -0,0 +1,96 @@
+package ru.practicum.dimension.service;
+
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps values of one dimension to dense integer ids stored in its own table. A value inserted by a transaction
+ * that rolls back loses its row, so ids resolved inside a transaction are cached only after it commits.
+ */
+public class Dictionary {
+
+    private static final int VALUES_PER_STATEMENT = 1000;
+
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final String table;
+    private final String column;
+    private final String type;
+    private final int cacheSize;
+    private final Map<String, Integer> cache = new ConcurrentHashMap<>();
+
+    public Dictionary(NamedParameterJdbcTemplate namedJdbcTemplate, String table, String column, String type, int cacheSize) {
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.table = table;
+        this.column = column;
+        this.type = type;
+        this.cacheSize = cacheSize;
+    }
+
+    public Map<String, Integer> resolve(Collection<String> values) {
+        Map<String, Integer> ids = new HashMap<>();
+        TreeSet<String> missing = new TreeSet<>();
+        for (String value : values) {
+            Integer id = cache.get(value);
+            if (id != null) {
+                ids.put(value, id);
+            } else {
+                missing.add(value);
+            }
+        }
+        Map<String, Integer> resolved = new HashMap<>();
+        List<String> sorted = new ArrayList<>(missing);
+        for (int from = 0; from < sorted.size(); from += VALUES_PER_STATEMENT) {
+            List<String> chunk = sorted.subList(from, Math.min(from + VALUES_PER_STATEMENT, sorted.size()));
+            namedJdbcTemplate.batchUpdate("INSERT INTO " + table + " (" + column + ")\n" +
+                            "VALUES (CAST(:value AS " + type + "))\n" +
+                            "ON CONFLICT (" + column + ") DO NOTHING",
+                    chunk.stream()
+                            .map(value -> new MapSqlParameterSource("value", value))
+                            .toArray(MapSqlParameterSource[]::new));
+            MapSqlParameterSource parameters = new MapSqlParameterSource();
+            List<String> rows = new ArrayList<>();
+            for (int i = 0; i < chunk.size(); i++) {
+                parameters.addValue("value" + i, chunk.get(i));
+                rows.add("(" + i + ", CAST(:value" + i + " AS " + type + "))");
+            }
+            namedJdbcTemplate.query("SELECT input.ord, dictionary.id\n" +
+                    "FROM (VALUES " + String.join(", ", rows) + ") AS input (ord, value)\n" +
+                    "JOIN " + table + " AS dictionary ON dictionary." + column + " = input.value", parameters, rs -> {
+                resolved.put(chunk.get(rs.getInt("ord")), rs.getInt("id"));
+            });
+        }
+        ids.putAll(resolved);
+        if (!resolved.isEmpty()) {
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        addToCache(resolved);
+                    }
+                });
+            } else {
+                addToCache(resolved);
+            }
+        }
+        return ids;
+    }
+
+    private void addToCache(Map<String, Integer> resolved) {
+        resolved.forEach((value, id) -> {
+            if (cache.size() < cacheSize) {
+                cache.put(value, id);
+            }
+        });
+    }
+
+}
@@ -0,0 +1,28 @@
+package ru.practicum.dimension.service;
+
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Dictionaries of the hit dimensions: apps and uris are stored in hits by id,
+ * visitor IPs get ids for the per-day visitor bitmaps.
+ */
+@Getter
+@Component
+public class Dimensions {
+
+    private final Dictionary apps;
+    private final Dictionary uris;
+    private final Dictionary ips;
+
+    public Dimensions(NamedParameterJdbcTemplate namedJdbcTemplate,
+                      @Value("${stats.dimensions.cache-size:100000}") int cacheSize,
+                      @Value("${stats.visitors.ip-cache-size:1000000}") int ipCacheSize) {
+        this.apps = new Dictionary(namedJdbcTemplate, "apps", "app", "VARCHAR", cacheSize);
+        this.uris = new Dictionary(namedJdbcTemplate, "uris", "uri", "VARCHAR", cacheSize);
+        this.ips = new Dictionary(namedJdbcTemplate, "visitor_ips", "ip", "INET", ipCacheSize);
+    }
+
+}
@@ -1,15 +1,24 @@
 package ru.practicum.hit.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import ru.practicum.hit.dto.EndpointHitDto;
+import ru.practicum.hit.model.StatsQuery;
 import ru.practicum.hit.service.HitService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.practicum.stats.dto.ViewStatsDto;
+import ru.practicum.stats.dto.ViewStatsRequestDto;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -19,7 +28,10 @@ import java.util.List;
 @RequestMapping
 public class HitController {
 
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
     private final HitService hitService;
+    private final ObjectMapper objectMapper;
 
     @PostMapping(value = "/hit")
     public ResponseEntity<EndpointHitDto> addNewHit(@RequestBody EndpointHitDto endpointHitDto) {
@@ -27,18 +39,65 @@ public class HitController {
         return ResponseEntity.status(HttpStatus.CREATED).body(hitService.addNewHit(endpointHitDto));
     }
 
+    @PostMapping(value = "/hits")
+    public ResponseEntity<List<EndpointHitDto>> addNewHits(@RequestBody List<EndpointHitDto> endpointHitDtos) {
+        log.info("Received POST-request at /hits endpoint with {} hits", endpointHitDtos.size());
+        return ResponseEntity.status(HttpStatus.CREATED).body(hitService.addNewHits(endpointHitDtos));
+    }
+
     @GetMapping(value = "/stats")
     public ResponseEntity<List<ViewStatsDto>> getStats(@RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime start,
                                                        @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime end,
                                                        @RequestParam(required = false) List<String> uris,
-                                                       @RequestParam(defaultValue = "false") String unique) {
-        log.info("Received GET-request at /stats?"
-                + (start != null ? "&start=" + start : "")
+                                                       @RequestParam(defaultValue = "false") String unique,
+                                                       @RequestParam(defaultValue = "false") String approx,
+                                                       @RequestParam(required = false) Integer limit) {
+        log.info("Received GET-request at /stats?" + getStatsParameters(start, end, uris, unique, approx, limit) + " endpoint");
+        StatsQuery query = hitService.getStatsQuery(start, end, uris, unique, approx, limit);
+        return ResponseEntity.ok().body(hitService.getStats(query));
+    }
+
+    @PostMapping(value = "/stats")
+    public ResponseEntity<List<ViewStatsDto>> getStats(@RequestBody ViewStatsRequestDto request) {
+        log.info("Received POST-request at /stats endpoint with start={}, end={}, unique={} and {} uris",
+                request.getStart(), request.getEnd(), request.getUnique(),
+                request.getUris() != null ? request.getUris().size() : 0);
+        StatsQuery query = hitService.getStatsQuery(request);
+        return ResponseEntity.ok().body(hitService.getStats(query));
+    }
+
+    @GetMapping(value = "/stats/stream")
+    public ResponseEntity<StreamingResponseBody> streamStats(@RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime start,
+                                                             @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime end,
+                                                             @RequestParam(required = false) List<String> uris,
+                                                             @RequestParam(defaultValue = "false") String unique,
+                                                             @RequestParam(defaultValue = "false") String approx,
+                                                             @RequestParam(required = false) Integer limit) {
+        log.info("Received GET-request at /stats/stream?" + getStatsParameters(start, end, uris, unique, approx, limit) + " endpoint");
+        StatsQuery query = hitService.getStatsQuery(start, end, uris, unique, approx, limit);
+        ObjectWriter writer = objectMapper.writerFor(ViewStatsDto.class)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        StreamingResponseBody body = outputStream -> hitService.streamStats(query, viewStats -> {
+            try {
+                writer.writeValue(outputStream, viewStats);
+                outputStream.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok()
+                .contentType(NDJSON)
+                .body(body);
+    }
+
+    private String getStatsParameters(LocalDateTime start, LocalDateTime end, List<String> uris, String unique,
+                                      String approx, Integer limit) {
+        return (start != null ? "&start=" + start : "")
                 + (end != null ? "&end=" + end : "")
                 + (uris != null ? "&uris=" + uris : "")
                 + (unique != null ? "&unique=" + unique : "")
-                + " endpoint");
-        return ResponseEntity.ok().body(hitService.getStats(start, end, uris, unique));
+                + (approx != null ? "&approx=" + approx : "")
+                + (limit != null ? "&limit=" + limit : "");
     }
 
 }
\ No newline at end of file
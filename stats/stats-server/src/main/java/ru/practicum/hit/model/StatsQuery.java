@@ -0,0 +1,18 @@
+package ru.practicum.hit.model;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+public class StatsQuery {
+
+    private final LocalDateTime start;
+    private final LocalDateTime end;
+    private final List<String> uris;
+    private final boolean unique;
+    private final boolean approx;
+    private final Integer limit;
+
+}
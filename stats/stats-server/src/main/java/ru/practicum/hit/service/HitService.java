@@ -1,15 +1,26 @@
 package ru.practicum.hit.service;
 
 import ru.practicum.hit.dto.EndpointHitDto;
+import ru.practicum.hit.model.StatsQuery;
 import ru.practicum.stats.dto.ViewStatsDto;
+import ru.practicum.stats.dto.ViewStatsRequestDto;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface HitService {
 
     EndpointHitDto addNewHit(EndpointHitDto endpointHitDto);
 
-    List<ViewStatsDto> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, String unique);
+    List<EndpointHitDto> addNewHits(List<EndpointHitDto> endpointHitDtos);
+
+    StatsQuery getStatsQuery(LocalDateTime start, LocalDateTime end, List<String> uris, String unique, String approx, Integer limit);
+
+    StatsQuery getStatsQuery(ViewStatsRequestDto request);
+
+    List<ViewStatsDto> getStats(StatsQuery query);
+
+    void streamStats(StatsQuery query, Consumer<ViewStatsDto> consumer);
 
 }
\ No newline at end of file
@@ -2,40 +2,156 @@ package ru.practicum.hit.service;
 
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.cache.service.StatsCache;
 import ru.practicum.hit.dto.EndpointHitDto;
 import ru.practicum.hit.mapper.HitMapper;
 import ru.practicum.hit.model.EndpointHit;
-import ru.practicum.hit.repo.HitRepository;
+import ru.practicum.hit.model.StatsQuery;
+import ru.practicum.ingest.service.HitCounters;
+import ru.practicum.dimension.service.Dimensions;
+import ru.practicum.rollup.model.Granularity;
+import ru.practicum.rollup.service.RollupService;
+import ru.practicum.sketch.service.SketchService;
+import ru.practicum.visitor.service.VisitorService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import ru.practicum.stats.dto.ViewStatsDto;
+import ru.practicum.stats.dto.ViewStatsRequestDto;
 import ru.practicum.exception.ValidationException;
+import ru.practicum.util.IpAddresses;
+import ru.practicum.util.SqlConditions;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class HitServiceImpl implements HitService {
 
-    private final HitRepository hitRepository;
     private final HitMapper hitMapper;
     private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final Dimensions dimensions;
+    private final RollupService rollupService;
+    private final SketchService sketchService;
+    private final VisitorService visitorService;
+    private final HitCounters hitCounters;
+    private final StatsCache statsCache;
+    private final TransactionTemplate transactionTemplate;
 
     @Override
     public EndpointHitDto addNewHit(EndpointHitDto endpointHitDto) {
         EndpointHit endpointHit = hitMapper.toEndpointHit(endpointHitDto);
-        EndpointHit savedEndpointHit = hitRepository.save(endpointHit);
+        validateHit(endpointHit);
+        ingest(List.of(endpointHit));
         log.info("Добавлен новый просмотр {}", endpointHit);
-        return hitMapper.toEndpointHitDto(savedEndpointHit);
+        return hitMapper.toEndpointHitDto(endpointHit);
     }
 
     @Override
-    public List<ViewStatsDto> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, String unique) {
+    public List<EndpointHitDto> addNewHits(List<EndpointHitDto> endpointHitDtos) {
+        if (endpointHitDtos == null) {
+            log.info("Не передан список просмотров для сохранения");
+            throw new ValidationException();
+        }
+        List<EndpointHit> endpointHits = endpointHitDtos.stream()
+                .map(hitMapper::toEndpointHit)
+                .collect(Collectors.toList());
+        endpointHits.forEach(this::validateHit);
+        ingest(endpointHits);
+        log.info("Добавлено новых просмотров: {}", endpointHits.size());
+        return endpointHits.stream()
+                .map(hitMapper::toEndpointHitDto)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Stores raw hits in one transaction; in-memory counters, sketches and visitors are updated only after it commits,
+     * so hits of a rolled back request are never counted. When raw hits are sampled, counters, sketches and visitors
+     * still get every hit.
+     */
+    private void ingest(List<EndpointHit> endpointHits) {
+        hitCounters.ingest(() -> ingestHits(endpointHits));
+    }
+
+    private void ingestHits(List<EndpointHit> endpointHits) {
+        List<EndpointHit> rawHits = !hitCounters.isCounterMode() ? endpointHits : endpointHits.stream()
+                .filter(endpointHit -> hitCounters.sampleRaw())
+                .collect(Collectors.toList());
+        transactionTemplate.executeWithoutResult(status -> saveHits(rawHits));
+        invalidateStats(rawHits);
+        sketchService.addHits(endpointHits);
+        visitorService.addHits(endpointHits);
+        List<EndpointHit> overflowHits = endpointHits.stream()
+                .filter(endpointHit -> !hitCounters.add(endpointHit))
+                .collect(Collectors.toList());
+        if (!overflowHits.isEmpty()) {
+            rollupService.addHits(overflowHits);
+            invalidateStats(overflowHits);
+        }
+    }
+
+    private void invalidateStats(List<EndpointHit> endpointHits) {
+        if (!endpointHits.isEmpty()) {
+            statsCache.invalidate(endpointHits.stream()
+                    .map(EndpointHit::getUri)
+                    .collect(Collectors.toSet()));
+        }
+    }
+
+    private void validateHit(EndpointHit endpointHit) {
+        if (endpointHit.getApp() == null || endpointHit.getUri() == null || endpointHit.getIp() == null) {
+            log.info("У просмотра {} не заполнены обязательные поля", endpointHit);
+            throw new ValidationException();
+        }
+        if (endpointHit.getTimestamp() == null) {
+            log.info("У просмотра {} не указана дата", endpointHit);
+            throw new ValidationException();
+        }
+        String ip = IpAddresses.canonical(endpointHit.getIp());
+        if (ip == null) {
+            log.info("У просмотра {} указан некорректный IP-адрес", endpointHit);
+            throw new ValidationException();
+        }
+        endpointHit.setIp(ip);
+    }
+
+    private void saveHits(List<EndpointHit> endpointHits) {
+        if (endpointHits.isEmpty()) {
+            return;
+        }
+        Map<String, Integer> appIds = dimensions.getApps().resolve(endpointHits.stream()
+                .map(EndpointHit::getApp)
+                .collect(Collectors.toSet()));
+        Map<String, Integer> uriIds = dimensions.getUris().resolve(endpointHits.stream()
+                .map(EndpointHit::getUri)
+                .collect(Collectors.toSet()));
+        String sql = "INSERT INTO public.hits (app_id, uri_id, ip, created_date)\n" +
+                "VALUES (:appId, :uriId, CAST(:ip AS INET), :timestamp)";
+        namedJdbcTemplate.batchUpdate(sql, endpointHits.stream()
+                .map(endpointHit -> new MapSqlParameterSource()
+                        .addValue("appId", appIds.get(endpointHit.getApp()))
+                        .addValue("uriId", uriIds.get(endpointHit.getUri()))
+                        .addValue("ip", endpointHit.getIp())
+                        .addValue("timestamp", endpointHit.getTimestamp()))
+                .toArray(MapSqlParameterSource[]::new));
+    }
+
+    @Override
+    public StatsQuery getStatsQuery(LocalDateTime start, LocalDateTime end, List<String> uris, String unique, String approx, Integer limit) {
         if (start == null) {
             log.info("Дата начала поиска не задана");
             throw new ValidationException();
@@ -45,84 +161,113 @@ public class HitServiceImpl implements HitService {
             throw new ValidationException();
         }
         validateSearchDate(start, end);
-        boolean onlyUnique = Boolean.parseBoolean(unique);
-        List<ViewStatsDto> viewStats;
-        if (onlyUnique) {
-            if (uris != null) {
-                viewStats = getUniqueStatsFromStartToEndWithUris(start, end, uris);
-            } else {
-                viewStats = getUniqueStatsFromStartToEnd(start, end);
-            }
-        } else {
-            if (uris != null) {
-                viewStats = getStatsFromStartToEndWithUris(start, end, uris);
-            } else {
-                viewStats = getStatsFromStartToEnd(start, end);
-            }
+        if (limit != null && limit <= 0) {
+            log.info("Ограничение числа записей статистики {} должно быть положительным", limit);
+            throw new ValidationException();
         }
-        log.info("Получена статистика {}", viewStats);
-        return viewStats;
+        return new StatsQuery(start,
+                end.truncatedTo(ChronoUnit.SECONDS).plusSeconds(1),
+                uris,
+                Boolean.parseBoolean(unique),
+                Boolean.parseBoolean(approx),
+                limit);
     }
 
-    private void validateSearchDate(LocalDateTime startDate, LocalDateTime endDate) {
-        if (endDate.isBefore(startDate)) {
-            log.info("Дата окончания поиска {} раньше, чем дата начала {}", endDate, startDate);
+    @Override
+    public StatsQuery getStatsQuery(ViewStatsRequestDto request) {
+        if (request == null) {
+            log.info("Не указаны параметры поиска статистики. Тело запроса пустое");
             throw new ValidationException();
         }
+        return getStatsQuery(parseDate(request.getStart()),
+                parseDate(request.getEnd()),
+                request.getUris(),
+                String.valueOf(request.getUnique()),
+                null,
+                null);
     }
 
-    private List<ViewStatsDto> getUniqueStatsFromStartToEndWithUris(LocalDateTime startDate, LocalDateTime endDate, List<String> uris) {
-        log.info("Extracting unique stats from start={} to end={} and uri in ({})", startDate, endDate, uris);
-        MapSqlParameterSource parameters = new MapSqlParameterSource();
-        parameters.addValue("start", startDate);
-        parameters.addValue("end", endDate);
-        parameters.addValue("uris", uris);
-        String sql = "SELECT app, uri, COUNT(DISTINCT ip) AS hits\n" +
-                "FROM public.hits\n" +
-                "WHERE created_date >= :start AND created_date <= :end AND uri IN (:uris)\n" +
-                "GROUP BY hits.app, hits.uri\n" +
-                "ORDER BY COUNT(DISTINCT ip) DESC";
-        return namedJdbcTemplate.query(sql, parameters, (rs, rowNum) -> createViewStats(rs));
+    private LocalDateTime parseDate(String date) {
+        if (date == null) {
+            return null;
+        }
+        try {
+            return LocalDateTime.parse(date, DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+        } catch (DateTimeParseException e) {
+            log.info("Дата {} указана в неверном формате", date);
+            throw new ValidationException();
+        }
     }
 
-    private List<ViewStatsDto> getUniqueStatsFromStartToEnd(LocalDateTime startDate, LocalDateTime endDate) {
-        log.info("Extracting unique stats from start={} to end={}", startDate, endDate);
-        MapSqlParameterSource parameters = new MapSqlParameterSource();
-        parameters.addValue("start", startDate);
-        parameters.addValue("end", endDate);
-        String sql = "SELECT app, uri, COUNT(DISTINCT ip) AS hits\n" +
-                "FROM public.hits\n" +
-                "WHERE created_date >= :start AND created_date <= :end\n" +
-                "GROUP BY hits.app, hits.uri\n" +
-                "ORDER BY COUNT(DISTINCT ip) DESC";
-        return namedJdbcTemplate.query(sql, parameters, (rs, rowNum) -> createViewStats(rs));
+    @Override
+    public List<ViewStatsDto> getStats(StatsQuery query) {
+        List<ViewStatsDto> viewStats = statsCache.get(statsCache.normalize(query), this::computeStats);
+        log.info("Получена статистика: {} записей", viewStats.size());
+        return viewStats;
     }
 
-    private List<ViewStatsDto> getStatsFromStartToEndWithUris(LocalDateTime startDate, LocalDateTime endDate, List<String> uris) {
-        log.info("Extracting all stats from start={} to end={} and uri in ({})", startDate, endDate, uris);
-        MapSqlParameterSource parameters = new MapSqlParameterSource();
-        parameters.addValue("start", startDate);
-        parameters.addValue("end", endDate);
-        parameters.addValue("uris", uris);
-        String sql = "SELECT app, uri, COUNT(ip) AS hits\n" +
-                "FROM public.hits\n" +
-                "WHERE created_date >= :start AND created_date <= :end AND uri IN (:uris)\n" +
-                "GROUP BY hits.app, hits.uri\n" +
-                "ORDER BY COUNT(ip) DESC";
-        return namedJdbcTemplate.query(sql, parameters, (rs, rowNum) -> createViewStats(rs));
+    private List<ViewStatsDto> computeStats(StatsQuery query) {
+        List<ViewStatsDto> viewStats = new ArrayList<>();
+        writeStats(query, viewStats::add);
+        return viewStats;
     }
 
-    private List<ViewStatsDto> getStatsFromStartToEnd(LocalDateTime startDate, LocalDateTime endDate) {
-        log.info("Extracting all stats from start={} to end={}", startDate, endDate);
+    @Override
+    @Transactional(readOnly = true)
+    public void streamStats(StatsQuery query, Consumer<ViewStatsDto> consumer) {
+        LongAdder rows = new LongAdder();
+        writeStats(query, viewStats -> {
+            consumer.accept(viewStats);
+            rows.increment();
+        });
+        log.info("Выгружена статистика: {} записей", rows.sum());
+    }
+
+    private void writeStats(StatsQuery query, Consumer<ViewStatsDto> consumer) {
+        LocalDateTime start = query.getStart();
+        LocalDateTime end = query.getEnd();
+        List<String> uris = query.getUris();
+        Integer limit = query.getLimit();
+        if (query.isUnique() && query.isApprox() && sketchService.isEnabled()) {
+            sketchService.getUniqueStats(start, end, uris, limit).forEach(consumer);
+        } else if (query.isUnique() && visitorService.coversWholeDays(start, end)) {
+            visitorService.getUniqueStats(start, end, uris, limit).forEach(consumer);
+        } else if (query.isUnique()) {
+            streamUniqueStats(start, end, uris, limit, consumer);
+        } else if (hitCounters.isCounterMode()) {
+            rollupService.streamStats(Granularity.MINUTE.floor(start), Granularity.MINUTE.ceil(end), uris, limit, consumer);
+        } else {
+            rollupService.streamStats(start, end, uris, limit, consumer);
+        }
+    }
+
+    private void validateSearchDate(LocalDateTime startDate, LocalDateTime endDate) {
+        if (endDate.isBefore(startDate)) {
+            log.info("Дата окончания поиска {} раньше, чем дата начала {}", endDate, startDate);
+            throw new ValidationException();
+        }
+    }
+
+    private void streamUniqueStats(LocalDateTime startDate, LocalDateTime endDate, List<String> uris, Integer limit,
+                                   Consumer<ViewStatsDto> consumer) {
+        log.info("Extracting unique stats from start={} to end={} and uri in ({})", startDate, endDate, uris);
         MapSqlParameterSource parameters = new MapSqlParameterSource();
         parameters.addValue("start", startDate);
         parameters.addValue("end", endDate);
-        String sql = "SELECT app, uri, COUNT(ip) AS hits\n" +
-                "FROM public.hits\n" +
-                "WHERE created_date >= :start AND created_date <= :end\n" +
-                "GROUP BY hits.app, hits.uri\n" +
-                "ORDER BY COUNT(ip) DESC";
-        return namedJdbcTemplate.query(sql, parameters, (rs, rowNum) -> createViewStats(rs));
+        parameters.addValue("uris", uris);
+        parameters.addValue("limit", limit);
+        String sql = "SELECT apps.app, uris.uri, stats.hits\n" +
+                "FROM (SELECT app_id, uri_id, COUNT(DISTINCT ip) AS hits\n" +
+                "      FROM public.hits\n" +
+                "      WHERE created_date >= :start AND created_date < :end" + SqlConditions.uriIdCondition(uris) + "\n" +
+                "      GROUP BY app_id, uri_id\n" +
+                "      ORDER BY hits DESC" + SqlConditions.limitClause(limit) + ") AS stats\n" +
+                "JOIN apps ON apps.id = stats.app_id\n" +
+                "JOIN uris ON uris.id = stats.uri_id\n" +
+                "ORDER BY stats.hits DESC";
+        namedJdbcTemplate.query(sql, parameters, rs -> {
+            consumer.accept(createViewStats(rs));
+        });
     }
 
     private ViewStatsDto createViewStats(ResultSet rs) throws SQLException {
@@ -0,0 +1,8 @@
+package ru.practicum.ingest.model;
+
+public enum IngestMode {
+
+    DIRECT,
+    COUNTER
+
+}
@@ -0,0 +1,87 @@
+package ru.practicum.ingest.service;
+
+import ru.practicum.rollup.model.RollupKey;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Accumulates a value per (app, uri, bucket) in memory between flushes. At most {@code maxKeys} keys are kept;
+ * updates of new keys beyond that are rejected and have to be written directly by the caller.
+ * Writers never block each other: {@link #drain} swaps in a new generation of values and waits only for
+ * the writers that were already updating the old one. Values are updated concurrently, so they have to be
+ * thread-safe or be updated under their own lock; drain is meant to be called by one thread at a time.
+ */
+public class Accumulator<V> {
+
+    private final Supplier<V> factory;
+    private final int maxKeys;
+    private volatile Generation<V> current = new Generation<>();
+
+    public Accumulator(Supplier<V> factory, int maxKeys) {
+        this.factory = factory;
+        this.maxKeys = maxKeys;
+    }
+
+    public boolean update(RollupKey key, Consumer<V> update) {
+        return update(key, update, false);
+    }
+
+    /**
+     * Merges drained values that could not be written back into the current generation, regardless of the key limit.
+     */
+    public void restore(Map<RollupKey, V> values, BiConsumer<V, V> merger) {
+        values.forEach((key, value) -> update(key, target -> merger.accept(target, value), true));
+    }
+
+    public Map<RollupKey, V> drain() {
+        Generation<V> generation = current;
+        if (generation.values.isEmpty()) {
+            return Map.of();
+        }
+        current = new Generation<>();
+        generation.closed = true;
+        while (generation.writers.sum() != 0) {
+            Thread.onSpinWait();
+        }
+        Map<RollupKey, V> values = new TreeMap<>(RollupKey.ORDER);
+        values.putAll(generation.values);
+        return values;
+    }
+
+    private boolean update(RollupKey key, Consumer<V> update, boolean force) {
+        while (true) {
+            Generation<V> generation = current;
+            generation.writers.increment();
+            try {
+                if (!generation.closed) {
+                    V value = generation.values.get(key);
+                    if (value == null) {
+                        if (!force && generation.values.size() >= maxKeys) {
+                            return false;
+                        }
+                        value = generation.values.computeIfAbsent(key, k -> factory.get());
+                    }
+                    update.accept(value);
+                    return true;
+                }
+            } finally {
+                generation.writers.decrement();
+            }
+        }
+    }
+
+    private static class Generation<V> {
+
+        private final Map<RollupKey, V> values = new ConcurrentHashMap<>();
+        private final LongAdder writers = new LongAdder();
+        private volatile boolean closed;
+
+    }
+
+}
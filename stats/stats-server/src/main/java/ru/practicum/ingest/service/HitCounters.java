@@ -0,0 +1,124 @@
+package ru.practicum.ingest.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.practicum.cache.service.StatsCache;
+import ru.practicum.hit.model.EndpointHit;
+import ru.practicum.ingest.model.IngestMode;
+import ru.practicum.rollup.model.Granularity;
+import ru.practicum.rollup.model.RollupKey;
+import ru.practicum.rollup.service.RollupService;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * Counts hits per (app, uri, minute) in memory and flushes the counts into the rollup tables
+ * every {@code flush-interval-ms}, so hot rollup rows are updated once per flush instead of once per request.
+ * With stats.ingest.mode=COUNTER raw hits are also sampled, so rollups, HLL sketches and visitor bitmaps, which
+ * get every hit, become the only full sources. At most {@code max-keys} keys are kept between flushes;
+ * hits for new keys beyond that are rejected by {@link #add} and have to be written directly by the caller.
+ * Counts of a flush that fails are merged back and written by the next one. Ingests run through {@link #ingest},
+ * so a rollup backfill can wait until every committed raw hit is also in the counters and flush them first.
+ */
+@Slf4j
+@Component
+public class HitCounters implements DisposableBean {
+
+    private final RollupService rollupService;
+    private final StatsCache statsCache;
+    private final IngestMode mode;
+    private final double rawSampleRate;
+    private final Accumulator<LongAdder> counts;
+    private final ReadWriteLock ingestLock = new ReentrantReadWriteLock();
+
+    public HitCounters(RollupService rollupService,
+                       StatsCache statsCache,
+                       @Value("${stats.ingest.mode:DIRECT}") IngestMode mode,
+                       @Value("${stats.ingest.max-keys:100000}") int maxKeys,
+                       @Value("${stats.ingest.raw-sample-rate:1.0}") double rawSampleRate) {
+        this.rollupService = rollupService;
+        this.statsCache = statsCache;
+        this.mode = mode;
+        this.rawSampleRate = rawSampleRate;
+        this.counts = new Accumulator<>(LongAdder::new, maxKeys);
+    }
+
+    public boolean isCounterMode() {
+        return mode == IngestMode.COUNTER;
+    }
+
+    public boolean isRawSampled() {
+        return isCounterMode() && rawSampleRate < 1.0;
+    }
+
+    public boolean sampleRaw() {
+        return rawSampleRate >= 1.0 || ThreadLocalRandom.current().nextDouble() < rawSampleRate;
+    }
+
+    public boolean add(EndpointHit endpointHit) {
+        return counts.update(new RollupKey(endpointHit.getApp(),
+                endpointHit.getUri(),
+                Granularity.MINUTE.floor(endpointHit.getTimestamp())), LongAdder::increment);
+    }
+
+    @Scheduled(fixedDelayString = "${stats.ingest.flush-interval-ms:1000}")
+    public synchronized void flush() {
+        Map<RollupKey, LongAdder> counters = counts.drain();
+        if (counters.isEmpty()) {
+            return;
+        }
+        Map<RollupKey, Long> minuteCounts = new TreeMap<>(RollupKey.ORDER);
+        counters.forEach((key, counter) -> minuteCounts.put(key, counter.sum()));
+        try {
+            rollupService.addCounts(minuteCounts);
+            statsCache.invalidate(minuteCounts.keySet().stream()
+                    .map(RollupKey::getUri)
+                    .collect(Collectors.toSet()));
+            log.debug("Сброшены счётчики просмотров: {} ключей", minuteCounts.size());
+        } catch (RuntimeException e) {
+            log.warn("Не удалось сбросить счётчики просмотров: {} ключей, повтор при следующем сбросе", minuteCounts.size(), e);
+            counts.restore(counters, (target, counter) -> target.add(counter.sum()));
+        }
+    }
+
+    /**
+     * Runs an ingest that stores raw hits and then adds them to the counters, so that {@link #flushBefore}
+     * never sees a committed raw hit that is not counted yet.
+     */
+    public void ingest(Runnable ingest) {
+        ingestLock.readLock().lock();
+        try {
+            ingest.run();
+        } finally {
+            ingestLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Waits for running ingests, runs the action and flushes the counters before any new ingest starts.
+     */
+    public void flushBefore(Runnable action) {
+        ingestLock.writeLock().lock();
+        try {
+            action.run();
+            flush();
+        } finally {
+            ingestLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        flush();
+    }
+
+}
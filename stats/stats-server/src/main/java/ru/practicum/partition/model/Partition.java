@@ -0,0 +1,12 @@
+package ru.practicum.partition.model;
+
+import lombok.Data;
+import ru.practicum.rollup.model.TimeRange;
+
+@Data
+public class Partition {
+
+    private final String name;
+    private final TimeRange range;
+
+}
@@ -0,0 +1,8 @@
+package ru.practicum.partition.model;
+
+public enum RetentionPolicy {
+
+    DROP,
+    DETACH
+
+}
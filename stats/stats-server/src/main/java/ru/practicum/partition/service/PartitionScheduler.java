@@ -0,0 +1,28 @@
+package ru.practicum.partition.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PartitionScheduler {
+
+    private final PartitionService partitionService;
+
+    @Scheduled(initialDelay = 0, fixedDelayString = "${stats.partition.check-interval-ms:3600000}")
+    public void maintainPartitions() {
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            partitionService.createPartitions(now);
+            partitionService.removeExpiredPartitions(now);
+        } catch (RuntimeException e) {
+            log.error("Не удалось обслужить партиции таблицы просмотров", e);
+        }
+    }
+
+}
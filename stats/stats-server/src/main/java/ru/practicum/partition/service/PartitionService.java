@@ -0,0 +1,13 @@
+package ru.practicum.partition.service;
+
+import java.time.LocalDateTime;
+
+public interface PartitionService {
+
+    void createPartitions(LocalDateTime now);
+
+    void removeExpiredPartitions(LocalDateTime now);
+
+    LocalDateTime getRetainedFrom(LocalDateTime now);
+
+}
@@ -0,0 +1,151 @@
+package ru.practicum.partition.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.partition.model.Partition;
+import ru.practicum.partition.model.PartitionInterval;
+import ru.practicum.partition.model.RetentionPolicy;
+import ru.practicum.rollup.model.TimeRange;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps public.hits partitioned by created_date. Partitions are created {@code premake} intervals ahead,
+ * rows that landed in hits_default are moved into their own partitions, and partitions older than
+ * {@code retention-days} are dropped or detached.
+ */
+@Slf4j
+@Service
+public class PartitionServiceImpl implements PartitionService {
+
+    private static final Pattern BOUND = Pattern.compile("FROM \\('([^']+)'\\) TO \\('([^']+)'\\)");
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PartitionInterval interval;
+    private final int premake;
+    private final int retentionDays;
+    private final RetentionPolicy retentionPolicy;
+
+    public PartitionServiceImpl(JdbcTemplate jdbcTemplate,
+                                @Value("${stats.partition.interval:DAY}") PartitionInterval interval,
+                                @Value("${stats.partition.premake:7}") int premake,
+                                @Value("${stats.partition.retention-days:0}") int retentionDays,
+                                @Value("${stats.partition.retention-policy:DROP}") RetentionPolicy retentionPolicy) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.interval = interval;
+        this.premake = premake;
+        this.retentionDays = retentionDays;
+        this.retentionPolicy = retentionPolicy;
+    }
+
+    @Override
+    @Transactional
+    public void createPartitions(LocalDateTime now) {
+        jdbcTemplate.execute("LOCK TABLE public.hits_default IN ACCESS EXCLUSIVE MODE");
+        List<Partition> partitions = getPartitions();
+        TreeSet<LocalDateTime> starts = new TreeSet<>();
+        LocalDateTime start = interval.floor(now);
+        for (int i = 0; i <= premake; i++) {
+            starts.add(start);
+            start = interval.next(start);
+        }
+        LocalDateTime cutoff = getCutoff(now);
+        starts.addAll(jdbcTemplate.queryForList("SELECT DISTINCT date_trunc('" + interval.getTruncUnit() + "', created_date)\n" +
+                "FROM public.hits_default", LocalDateTime.class).stream()
+                .filter(bucket -> cutoff == null || interval.next(bucket).isAfter(cutoff))
+                .collect(Collectors.toList()));
+        for (LocalDateTime partitionStart : starts) {
+            TimeRange range = new TimeRange(partitionStart, interval.next(partitionStart));
+            if (partitions.stream().noneMatch(partition -> overlaps(partition.getRange(), range))) {
+                createPartition(interval.partitionName(partitionStart), range);
+            }
+        }
+    }
+
+    private void createPartition(String name, TimeRange range) {
+        String start = TIMESTAMP.format(range.getStart());
+        String end = TIMESTAMP.format(range.getEnd());
+        jdbcTemplate.execute("CREATE TABLE public." + name + " (LIKE public.hits INCLUDING DEFAULTS INCLUDING CONSTRAINTS)");
+        int moved = jdbcTemplate.update("WITH moved AS (\n" +
+                "  DELETE FROM public.hits_default\n" +
+                "  WHERE created_date >= ? AND created_date < ?\n" +
+                "  RETURNING *\n" +
+                ")\n" +
+                "INSERT INTO public." + name + " SELECT * FROM moved", range.getStart(), range.getEnd());
+        jdbcTemplate.execute("ALTER TABLE public.hits ATTACH PARTITION public." + name +
+                " FOR VALUES FROM ('" + start + "') TO ('" + end + "')");
+        log.info("Создана партиция {} для просмотров с {} по {}, перенесено строк: {}", name, start, end, moved);
+    }
+
+    @Override
+    @Transactional
+    public void removeExpiredPartitions(LocalDateTime now) {
+        LocalDateTime cutoff = getCutoff(now);
+        if (cutoff == null) {
+            return;
+        }
+        for (Partition partition : getPartitions()) {
+            if (partition.getRange().getEnd().isAfter(cutoff)) {
+                continue;
+            }
+            if (retentionPolicy == RetentionPolicy.DETACH) {
+                jdbcTemplate.execute("ALTER TABLE public.hits DETACH PARTITION public." + partition.getName());
+                log.info("Партиция {} отсоединена от таблицы просмотров", partition.getName());
+            } else {
+                jdbcTemplate.execute("DROP TABLE public." + partition.getName());
+                log.info("Партиция {} удалена", partition.getName());
+            }
+        }
+        int deleted = jdbcTemplate.update("DELETE FROM public.hits_default WHERE created_date < ?", cutoff);
+        if (deleted > 0) {
+            log.info("Из партиции по умолчанию удалено устаревших просмотров: {}", deleted);
+        }
+    }
+
+    /**
+     * Start of the range whose raw hits are all kept, or null if nothing expires.
+     */
+    @Override
+    public LocalDateTime getRetainedFrom(LocalDateTime now) {
+        return getCutoff(now);
+    }
+
+    private LocalDateTime getCutoff(LocalDateTime now) {
+        return retentionDays > 0 ? now.truncatedTo(ChronoUnit.DAYS).minusDays(retentionDays) : null;
+    }
+
+    private List<Partition> getPartitions() {
+        return jdbcTemplate.query("SELECT c.relname, pg_get_expr(c.relpartbound, c.oid) AS bound\n" +
+                        "FROM pg_inherits i\n" +
+                        "JOIN pg_class c ON c.oid = i.inhrelid\n" +
+                        "WHERE i.inhparent = 'public.hits'::regclass",
+                (rs, rowNum) -> {
+                    Matcher matcher = BOUND.matcher(rs.getString("bound"));
+                    if (!matcher.find()) {
+                        return null;
+                    }
+                    return new Partition(rs.getString("relname"), new TimeRange(
+                            LocalDateTime.parse(matcher.group(1), TIMESTAMP),
+                            LocalDateTime.parse(matcher.group(2), TIMESTAMP)));
+                }).stream()
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    private boolean overlaps(TimeRange first, TimeRange second) {
+        return first.getStart().isBefore(second.getEnd()) && second.getStart().isBefore(first.getEnd());
+    }
+
+}
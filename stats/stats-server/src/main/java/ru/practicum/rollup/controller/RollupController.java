@@ -0,0 +1,26 @@
+package ru.practicum.rollup.controller;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import ru.practicum.rollup.service.RollupService;
+
+@Slf4j
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/admin/rollups")
+public class RollupController {
+
+    private final RollupService rollupService;
+
+    @PostMapping("/backfill")
+    public ResponseEntity<Void> backfill() {
+        log.info("Received POST-request at /admin/rollups/backfill endpoint");
+        rollupService.backfill();
+        return ResponseEntity.noContent().build();
+    }
+
+}
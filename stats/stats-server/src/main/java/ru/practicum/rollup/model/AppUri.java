@@ -0,0 +1,11 @@
+package ru.practicum.rollup.model;
+
+import lombok.Data;
+
+@Data
+public class AppUri {
+
+    private final String app;
+    private final String uri;
+
+}
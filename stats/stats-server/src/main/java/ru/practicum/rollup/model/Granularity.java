@@ -0,0 +1,34 @@
+package ru.practicum.rollup.model;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+@Getter
+@RequiredArgsConstructor
+public enum Granularity {
+
+    MINUTE("hits_rollup_minute", "minute", ChronoUnit.MINUTES),
+    HOUR("hits_rollup_hour", "hour", ChronoUnit.HOURS),
+    DAY("hits_rollup_day", "day", ChronoUnit.DAYS);
+
+    private final String table;
+    private final String truncUnit;
+    private final ChronoUnit unit;
+
+    public LocalDateTime floor(LocalDateTime dateTime) {
+        return dateTime.truncatedTo(unit);
+    }
+
+    public LocalDateTime ceil(LocalDateTime dateTime) {
+        LocalDateTime floor = floor(dateTime);
+        return floor.equals(dateTime) ? floor : floor.plus(1, unit);
+    }
+
+    public Granularity finer() {
+        return ordinal() == 0 ? null : values()[ordinal() - 1];
+    }
+
+}
@@ -0,0 +1,19 @@
+package ru.practicum.rollup.model;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+
+@Data
+public class RollupKey {
+
+    public static final Comparator<RollupKey> ORDER = Comparator.comparing(RollupKey::getApp)
+            .thenComparing(RollupKey::getUri)
+            .thenComparing(RollupKey::getBucket);
+
+    private final String app;
+    private final String uri;
+    private final LocalDateTime bucket;
+
+}
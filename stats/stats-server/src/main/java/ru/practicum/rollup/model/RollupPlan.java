@@ -0,0 +1,55 @@
+package ru.practicum.rollup.model;
+
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Splits a half-open range [start, end) into whole buckets of the coarsest possible granularity.
+ * The parts at the edges that do not fill a whole bucket of the finest granularity are left as raw ranges.
+ */
+@Getter
+public class RollupPlan {
+
+    private final Map<Granularity, List<TimeRange>> buckets = new EnumMap<>(Granularity.class);
+    private final List<TimeRange> raw = new ArrayList<>();
+
+    public static RollupPlan of(LocalDateTime start, LocalDateTime end, Granularity coarsest) {
+        return of(start, end, coarsest, Granularity.MINUTE);
+    }
+
+    public static RollupPlan of(LocalDateTime start, LocalDateTime end, Granularity coarsest, Granularity finest) {
+        RollupPlan plan = new RollupPlan();
+        plan.split(start, end, coarsest, finest);
+        return plan;
+    }
+
+    public List<TimeRange> getRanges(Granularity granularity) {
+        return buckets.getOrDefault(granularity, List.of());
+    }
+
+    private void split(LocalDateTime start, LocalDateTime end, Granularity granularity, Granularity finest) {
+        if (!start.isBefore(end)) {
+            return;
+        }
+        if (granularity == null) {
+            raw.add(new TimeRange(start, end));
+            return;
+        }
+        LocalDateTime firstBucket = granularity.ceil(start);
+        LocalDateTime lastBucket = granularity.floor(end);
+        Granularity finer = granularity == finest ? null : granularity.finer();
+        if (!firstBucket.isBefore(lastBucket)) {
+            split(start, end, finer, finest);
+            return;
+        }
+        buckets.computeIfAbsent(granularity, key -> new ArrayList<>()).add(new TimeRange(firstBucket, lastBucket));
+        split(start, firstBucket, finer, finest);
+        split(lastBucket, end, finer, finest);
+    }
+
+}
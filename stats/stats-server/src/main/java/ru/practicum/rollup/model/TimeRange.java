@@ -0,0 +1,13 @@
+package ru.practicum.rollup.model;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+public class TimeRange {
+
+    private final LocalDateTime start;
+    private final LocalDateTime end;
+
+}
@@ -0,0 +1,24 @@
+package ru.practicum.rollup.service;
+
+import ru.practicum.hit.model.EndpointHit;
+import ru.practicum.rollup.model.RollupKey;
+import ru.practicum.stats.dto.ViewStatsDto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+public interface RollupService {
+
+    void addHits(List<EndpointHit> endpointHits);
+
+    void addCounts(Map<RollupKey, Long> minuteCounts);
+
+    List<ViewStatsDto> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, Integer limit);
+
+    void streamStats(LocalDateTime start, LocalDateTime end, List<String> uris, Integer limit, Consumer<ViewStatsDto> consumer);
+
+    void backfill();
+
+}
@@ -0,0 +1,165 @@
+package ru.practicum.rollup.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.exception.ConflictException;
+import ru.practicum.hit.model.EndpointHit;
+import ru.practicum.ingest.service.HitCounters;
+import ru.practicum.partition.service.PartitionService;
+import ru.practicum.rollup.model.Granularity;
+import ru.practicum.rollup.model.RollupKey;
+import ru.practicum.rollup.model.RollupPlan;
+import ru.practicum.rollup.model.TimeRange;
+import ru.practicum.stats.dto.ViewStatsDto;
+import ru.practicum.util.SqlConditions;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RollupServiceImpl implements RollupService {
+
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final PartitionService partitionService;
+    private final ObjectProvider<HitCounters> hitCountersProvider;
+
+    @Override
+    @Transactional
+    public void addHits(List<EndpointHit> endpointHits) {
+        Map<RollupKey, Long> minuteCounts = new TreeMap<>(RollupKey.ORDER);
+        for (EndpointHit endpointHit : endpointHits) {
+            RollupKey key = new RollupKey(endpointHit.getApp(),
+                    endpointHit.getUri(),
+                    Granularity.MINUTE.floor(endpointHit.getTimestamp()));
+            minuteCounts.merge(key, 1L, Long::sum);
+        }
+        addCounts(minuteCounts);
+    }
+
+    @Override
+    @Transactional
+    public void addCounts(Map<RollupKey, Long> minuteCounts) {
+        for (Granularity granularity : Granularity.values()) {
+            Map<RollupKey, Long> counts = new TreeMap<>(RollupKey.ORDER);
+            minuteCounts.forEach((key, hits) -> counts.merge(new RollupKey(key.getApp(),
+                    key.getUri(),
+                    granularity.floor(key.getBucket())), hits, Long::sum));
+            upsert(granularity, counts);
+        }
+    }
+
+    private void upsert(Granularity granularity, Map<RollupKey, Long> counts) {
+        String sql = "INSERT INTO " + granularity.getTable() + " (app, uri, bucket, hits)\n" +
+                "VALUES (:app, :uri, :bucket, :hits)\n" +
+                "ON CONFLICT (app, uri, bucket) DO UPDATE SET hits = " + granularity.getTable() + ".hits + EXCLUDED.hits";
+        MapSqlParameterSource[] batch = counts.entrySet().stream()
+                .map(entry -> new MapSqlParameterSource()
+                        .addValue("app", entry.getKey().getApp())
+                        .addValue("uri", entry.getKey().getUri())
+                        .addValue("bucket", entry.getKey().getBucket())
+                        .addValue("hits", entry.getValue()))
+                .toArray(MapSqlParameterSource[]::new);
+        namedJdbcTemplate.batchUpdate(sql, batch);
+    }
+
+    @Override
+    public List<ViewStatsDto> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, Integer limit) {
+        List<ViewStatsDto> viewStats = new ArrayList<>();
+        streamStats(start, end, uris, limit, viewStats::add);
+        return viewStats;
+    }
+
+    @Override
+    public void streamStats(LocalDateTime start, LocalDateTime end, List<String> uris, Integer limit, Consumer<ViewStatsDto> consumer) {
+        RollupPlan plan = RollupPlan.of(start, end, Granularity.DAY);
+        log.info("Extracting all stats from start={} to end={} and uri in ({}) using rollups {} and raw ranges {}",
+                start, end, uris, plan.getBuckets(), plan.getRaw());
+        MapSqlParameterSource parameters = new MapSqlParameterSource();
+        List<String> parts = new ArrayList<>();
+        for (Granularity granularity : Granularity.values()) {
+            List<TimeRange> ranges = plan.getRanges(granularity);
+            if (!ranges.isEmpty()) {
+                parts.add("SELECT app, uri, hits\n" +
+                        "FROM " + granularity.getTable() + "\n" +
+                        "WHERE " + SqlConditions.rangeCondition("bucket", granularity.name().toLowerCase(), ranges, parameters) +
+                        SqlConditions.uriCondition(uris));
+            }
+        }
+        if (!plan.getRaw().isEmpty()) {
+            parts.add("SELECT apps.app, uris.uri, raw.hits\n" +
+                    "FROM (SELECT app_id, uri_id, COUNT(*) AS hits\n" +
+                    "      FROM public.hits\n" +
+                    "      WHERE " + SqlConditions.rangeCondition("created_date", "raw", plan.getRaw(), parameters) +
+                    SqlConditions.uriIdCondition(uris) + "\n" +
+                    "      GROUP BY app_id, uri_id) AS raw\n" +
+                    "JOIN apps ON apps.id = raw.app_id\n" +
+                    "JOIN uris ON uris.id = raw.uri_id");
+        }
+        if (uris != null) {
+            parameters.addValue("uris", uris);
+        }
+        parameters.addValue("limit", limit);
+        String sql = "SELECT app, uri, SUM(hits) AS hits\n" +
+                "FROM (" + String.join("\nUNION ALL\n", parts) + ") AS rollup\n" +
+                "GROUP BY app, uri\n" +
+                "ORDER BY SUM(hits) DESC" +
+                SqlConditions.limitClause(limit);
+        namedJdbcTemplate.query(sql, parameters, rs -> {
+            consumer.accept(ViewStatsDto.builder()
+                    .app(rs.getString("app"))
+                    .uri(rs.getString("uri"))
+                    .hits(rs.getInt("hits"))
+                    .build());
+        });
+    }
+
+    /**
+     * Rebuilds the rollups of the range whose raw hits are all retained. Counters are flushed under the lock
+     * on public.hits first, so hits that are already stored raw are not added once more by the next flush.
+     * Rollups older than the retained range are kept as they are, and sampled raw hits can't be rolled up at all.
+     */
+    @Override
+    @Transactional
+    public void backfill() {
+        HitCounters hitCounters = hitCountersProvider.getObject();
+        if (hitCounters.isRawSampled()) {
+            log.info("Агрегаты нельзя пересчитать по выборке сырых просмотров");
+            throw new ConflictException();
+        }
+        hitCounters.flushBefore(() -> namedJdbcTemplate.getJdbcTemplate().execute("LOCK TABLE public.hits IN SHARE MODE"));
+        LocalDateTime from = partitionService.getRetainedFrom(LocalDateTime.now());
+        MapSqlParameterSource parameters = new MapSqlParameterSource("from", from);
+        Granularity previous = null;
+        for (Granularity granularity : Granularity.values()) {
+            namedJdbcTemplate.update("DELETE FROM " + granularity.getTable() + "\n" +
+                    SqlConditions.fromCondition("bucket", from), parameters);
+            String source = previous == null
+                    ? "SELECT apps.app, uris.uri, date_trunc('" + granularity.getTruncUnit() + "', created_date) AS bucket, COUNT(*) AS hits\n" +
+                    "FROM public.hits\n" +
+                    "JOIN apps ON apps.id = hits.app_id\n" +
+                    "JOIN uris ON uris.id = hits.uri_id\n" +
+                    SqlConditions.fromCondition("created_date", from)
+                    : "SELECT app, uri, date_trunc('" + granularity.getTruncUnit() + "', bucket) AS bucket, SUM(hits) AS hits\n" +
+                    "FROM " + previous.getTable() + "\n" +
+                    SqlConditions.fromCondition("bucket", from);
+            int rows = namedJdbcTemplate.update("INSERT INTO " + granularity.getTable() +
+                    " (app, uri, bucket, hits)\n" +
+                    source +
+                    "GROUP BY 1, 2, 3", parameters);
+            log.info("Пересчитана таблица агрегатов {} начиная с {}: {} строк", granularity.getTable(), from, rows);
+            previous = granularity;
+        }
+    }
+
+}
@@ -0,0 +1,26 @@
+package ru.practicum.sketch.controller;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import ru.practicum.sketch.service.SketchService;
+
+@Slf4j
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/admin/sketches")
+public class SketchController {
+
+    private final SketchService sketchService;
+
+    @PostMapping("/backfill")
+    public ResponseEntity<Void> backfill() {
+        log.info("Received POST-request at /admin/sketches/backfill endpoint");
+        sketchService.backfill();
+        return ResponseEntity.noContent().build();
+    }
+
+}
@@ -0,0 +1,19 @@
+package ru.practicum.sketch.service;
+
+import ru.practicum.hit.model.EndpointHit;
+import ru.practicum.stats.dto.ViewStatsDto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface SketchService {
+
+    boolean isEnabled();
+
+    void addHits(List<EndpointHit> endpointHits);
+
+    List<ViewStatsDto> getUniqueStats(LocalDateTime start, LocalDateTime end, List<String> uris, Integer limit);
+
+    void backfill();
+
+}
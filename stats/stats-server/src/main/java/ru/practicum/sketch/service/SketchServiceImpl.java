@@ -0,0 +1,255 @@
+package ru.practicum.sketch.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.cache.service.StatsCache;
+import ru.practicum.exception.ConflictException;
+import ru.practicum.hit.model.EndpointHit;
+import ru.practicum.ingest.service.Accumulator;
+import ru.practicum.ingest.service.HitCounters;
+import ru.practicum.partition.service.PartitionService;
+import ru.practicum.rollup.model.AppUri;
+import ru.practicum.rollup.model.Granularity;
+import ru.practicum.rollup.model.RollupKey;
+import ru.practicum.rollup.model.RollupPlan;
+import ru.practicum.sketch.model.HyperLogLog;
+import ru.practicum.stats.dto.ViewStatsDto;
+import ru.practicum.util.SqlConditions;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps an HLL sketch of visitor ips per (app, uri, hour). New hits are added to sketches buffered in memory,
+ * which are merged into hits_sketch_hour every {@code flush-interval-ms}, so a hot sketch row is locked
+ * once per flush instead of once per request. Merging is idempotent, so sketches of a failed flush are
+ * put back into the buffer and merged by the next one.
+ */
+@Slf4j
+@Service
+public class SketchServiceImpl implements SketchService, DisposableBean {
+
+    private static final int KEYS_PER_STATEMENT = 1000;
+
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final StatsCache statsCache;
+    private final PartitionService partitionService;
+    private final HitCounters hitCounters;
+    private final boolean enabled;
+    private final Accumulator<HyperLogLog> buffer;
+
+    public SketchServiceImpl(NamedParameterJdbcTemplate namedJdbcTemplate,
+                             TransactionTemplate transactionTemplate,
+                             StatsCache statsCache,
+                             PartitionService partitionService,
+                             HitCounters hitCounters,
+                             @Value("${stats.sketch.enabled:true}") boolean enabled,
+                             @Value("${stats.sketch.max-keys:100000}") int maxKeys) {
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.statsCache = statsCache;
+        this.partitionService = partitionService;
+        this.hitCounters = hitCounters;
+        this.enabled = enabled;
+        this.buffer = new Accumulator<>(HyperLogLog::new, maxKeys);
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void addHits(List<EndpointHit> endpointHits) {
+        if (!enabled) {
+            return;
+        }
+        Map<RollupKey, HyperLogLog> overflow = new TreeMap<>(RollupKey.ORDER);
+        for (EndpointHit endpointHit : endpointHits) {
+            RollupKey key = new RollupKey(endpointHit.getApp(),
+                    endpointHit.getUri(),
+                    Granularity.HOUR.floor(endpointHit.getTimestamp()));
+            if (!buffer.update(key, sketch -> add(sketch, endpointHit.getIp()))) {
+                overflow.computeIfAbsent(key, k -> new HyperLogLog()).add(endpointHit.getIp());
+            }
+        }
+        if (!overflow.isEmpty()) {
+            transactionTemplate.executeWithoutResult(status -> mergeSketches(overflow));
+            invalidateStats(overflow);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${stats.sketch.flush-interval-ms:1000}")
+    public synchronized void flush() {
+        Map<RollupKey, HyperLogLog> sketches = buffer.drain();
+        if (sketches.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> mergeSketches(sketches));
+            invalidateStats(sketches);
+            log.debug("Сброшены HLL-скетчи уникальных просмотров: {} ключей", sketches.size());
+        } catch (RuntimeException e) {
+            log.warn("Не удалось сбросить HLL-скетчи: {} ключей, повтор при следующем сбросе", sketches.size(), e);
+            buffer.restore(sketches, this::merge);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        flush();
+    }
+
+    private void add(HyperLogLog sketch, String ip) {
+        synchronized (sketch) {
+            sketch.add(ip);
+        }
+    }
+
+    private void merge(HyperLogLog sketch, HyperLogLog other) {
+        synchronized (sketch) {
+            sketch.merge(other);
+        }
+    }
+
+    private void invalidateStats(Map<RollupKey, HyperLogLog> sketches) {
+        statsCache.invalidate(sketches.keySet().stream()
+                .map(RollupKey::getUri)
+                .collect(Collectors.toSet()));
+    }
+
+    private void mergeSketches(Map<RollupKey, HyperLogLog> sketches) {
+        List<RollupKey> keys = new ArrayList<>(sketches.keySet());
+        for (int from = 0; from < keys.size(); from += KEYS_PER_STATEMENT) {
+            List<RollupKey> chunk = keys.subList(from, Math.min(from + KEYS_PER_STATEMENT, keys.size()));
+            byte[] empty = new HyperLogLog().toBytes();
+            namedJdbcTemplate.batchUpdate("INSERT INTO hits_sketch_hour (app, uri, bucket, sketch)\n" +
+                            "VALUES (:app, :uri, :bucket, :sketch)\n" +
+                            "ON CONFLICT (app, uri, bucket) DO NOTHING",
+                    chunk.stream()
+                            .map(key -> keyParameters(key).addValue("sketch", empty))
+                            .toArray(MapSqlParameterSource[]::new));
+            MapSqlParameterSource parameters = new MapSqlParameterSource("keys", chunk.stream()
+                    .map(key -> new Object[]{key.getApp(), key.getUri(), key.getBucket()})
+                    .collect(Collectors.toList()));
+            namedJdbcTemplate.query("SELECT app, uri, bucket, sketch\n" +
+                    "FROM hits_sketch_hour\n" +
+                    "WHERE (app, uri, bucket) IN (:keys)\n" +
+                    "ORDER BY app, uri, bucket\n" +
+                    "FOR UPDATE", parameters, rs -> {
+                RollupKey key = new RollupKey(rs.getString("app"),
+                        rs.getString("uri"),
+                        rs.getTimestamp("bucket").toLocalDateTime());
+                sketches.get(key).merge(HyperLogLog.fromBytes(rs.getBytes("sketch")));
+            });
+            namedJdbcTemplate.batchUpdate("UPDATE hits_sketch_hour SET sketch = :sketch\n" +
+                            "WHERE app = :app AND uri = :uri AND bucket = :bucket",
+                    chunk.stream()
+                            .map(key -> keyParameters(key).addValue("sketch", sketches.get(key).toBytes()))
+                            .toArray(MapSqlParameterSource[]::new));
+        }
+    }
+
+    private MapSqlParameterSource keyParameters(RollupKey key) {
+        return new MapSqlParameterSource()
+                .addValue("app", key.getApp())
+                .addValue("uri", key.getUri())
+                .addValue("bucket", key.getBucket());
+    }
+
+    @Override
+    public List<ViewStatsDto> getUniqueStats(LocalDateTime start, LocalDateTime end, List<String> uris, Integer limit) {
+        RollupPlan plan = RollupPlan.of(start, end, Granularity.HOUR, Granularity.HOUR);
+        log.info("Estimating unique stats from start={} to end={} and uri in ({}) using sketches {} and raw ranges {}",
+                start, end, uris, plan.getBuckets(), plan.getRaw());
+        Map<AppUri, HyperLogLog> sketches = new HashMap<>();
+        if (!plan.getRanges(Granularity.HOUR).isEmpty()) {
+            MapSqlParameterSource parameters = new MapSqlParameterSource("uris", uris);
+            String sql = "SELECT app, uri, sketch\n" +
+                    "FROM hits_sketch_hour\n" +
+                    "WHERE " + SqlConditions.rangeCondition("bucket", "hour", plan.getRanges(Granularity.HOUR), parameters) +
+                    SqlConditions.uriCondition(uris);
+            namedJdbcTemplate.query(sql, parameters, rs -> {
+                AppUri key = new AppUri(rs.getString("app"), rs.getString("uri"));
+                sketches.computeIfAbsent(key, k -> new HyperLogLog())
+                        .merge(HyperLogLog.fromBytes(rs.getBytes("sketch")));
+            });
+        }
+        if (!plan.getRaw().isEmpty()) {
+            MapSqlParameterSource parameters = new MapSqlParameterSource("uris", uris);
+            String sql = "SELECT apps.app, uris.uri, host(raw.ip) AS ip\n" +
+                    "FROM (SELECT DISTINCT app_id, uri_id, ip\n" +
+                    "      FROM public.hits\n" +
+                    "      WHERE " + SqlConditions.rangeCondition("created_date", "raw", plan.getRaw(), parameters) +
+                    SqlConditions.uriIdCondition(uris) + ") AS raw\n" +
+                    "JOIN apps ON apps.id = raw.app_id\n" +
+                    "JOIN uris ON uris.id = raw.uri_id";
+            namedJdbcTemplate.query(sql, parameters, rs -> {
+                AppUri key = new AppUri(rs.getString("app"), rs.getString("uri"));
+                sketches.computeIfAbsent(key, k -> new HyperLogLog()).add(rs.getString("ip"));
+            });
+        }
+        return sketches.entrySet().stream()
+                .map(entry -> ViewStatsDto.builder()
+                        .app(entry.getKey().getApp())
+                        .uri(entry.getKey().getUri())
+                        .hits((int) entry.getValue().estimate())
+                        .build())
+                .sorted(Comparator.comparing(ViewStatsDto::getHits).reversed())
+                .limit(limit != null ? limit : Long.MAX_VALUE)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Rebuilds the sketches of the range whose raw hits are all retained; older sketches are kept as they are.
+     */
+    @Override
+    @Transactional
+    public void backfill() {
+        if (hitCounters.isRawSampled()) {
+            log.info("HLL-скетчи нельзя пересчитать по выборке сырых просмотров");
+            throw new ConflictException();
+        }
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(namedJdbcTemplate.getJdbcTemplate().getDataSource());
+        jdbcTemplate.setFetchSize(10_000);
+        jdbcTemplate.execute("LOCK TABLE public.hits IN SHARE MODE");
+        NamedParameterJdbcTemplate backfillTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        LocalDateTime from = partitionService.getRetainedFrom(LocalDateTime.now());
+        MapSqlParameterSource parameters = new MapSqlParameterSource("from", from);
+        backfillTemplate.update("DELETE FROM hits_sketch_hour\n" +
+                SqlConditions.fromCondition("bucket", from), parameters);
+        Map<RollupKey, HyperLogLog> sketches = new TreeMap<>(RollupKey.ORDER);
+        backfillTemplate.query("SELECT apps.app, uris.uri, date_trunc('hour', created_date) AS bucket, host(ip) AS ip\n" +
+                "FROM public.hits\n" +
+                "JOIN apps ON apps.id = hits.app_id\n" +
+                "JOIN uris ON uris.id = hits.uri_id\n" +
+                SqlConditions.fromCondition("created_date", from), parameters, rs -> {
+            RollupKey key = new RollupKey(rs.getString("app"),
+                    rs.getString("uri"),
+                    rs.getTimestamp("bucket").toLocalDateTime());
+            sketches.computeIfAbsent(key, k -> new HyperLogLog()).add(rs.getString("ip"));
+            if (sketches.size() >= KEYS_PER_STATEMENT) {
+                mergeSketches(sketches);
+                sketches.clear();
+            }
+        });
+        mergeSketches(sketches);
+        log.info("Пересчитаны HLL-скетчи уникальных просмотров начиная с {}", from);
+    }
+
+}
@@ -0,0 +1,89 @@
+package ru.practicum.util;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.regex.Pattern;
+
+/**
+ * Brings ip literals to the text form PostgreSQL returns from host(inet), so that the same address written
+ * in different ways is one visitor in raw hits, HLL sketches and visitor bitmaps alike.
+ * IPv4-mapped IPv6 addresses are stored as plain IPv4.
+ */
+public final class IpAddresses {
+
+    private static final Pattern IPV4 = Pattern.compile("((25[0-5]|2[0-4]\\d|1\\d\\d|[1-9]?\\d)\\.){3}(25[0-5]|2[0-4]\\d|1\\d\\d|[1-9]?\\d)");
+
+    private IpAddresses() {
+    }
+
+    /**
+     * Returns the canonical form of an ip literal, or null if it is not one.
+     */
+    public static String canonical(String ip) {
+        if (IPV4.matcher(ip).matches()) {
+            return ip;
+        }
+        if (!ip.contains(":") || ip.contains("%")) {
+            return null;
+        }
+        InetAddress address;
+        try {
+            address = InetAddress.getByName(ip);
+        } catch (UnknownHostException e) {
+            return null;
+        }
+        if (address instanceof Inet4Address) {
+            return address.getHostAddress();
+        }
+        return toText(address.getAddress());
+    }
+
+    private static String toText(byte[] bytes) {
+        int[] words = new int[8];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = (bytes[2 * i] & 0xFF) << 8 | bytes[2 * i + 1] & 0xFF;
+        }
+        int bestStart = -1;
+        int bestLength = 0;
+        for (int i = 0; i < words.length; ) {
+            if (words[i] != 0) {
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < words.length && words[i] == 0) {
+                i++;
+            }
+            if (i - start > bestLength) {
+                bestStart = start;
+                bestLength = i - start;
+            }
+        }
+        if (bestLength < 2) {
+            bestStart = -1;
+        }
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < words.length; i++) {
+            if (i == bestStart) {
+                text.append(':');
+                i += bestLength - 1;
+                if (i == words.length - 1) {
+                    text.append(':');
+                }
+                continue;
+            }
+            if (i > 0) {
+                text.append(':');
+            }
+            if (i == 6 && bestStart == 0 && (bestLength == 6 || bestLength == 5 && words[5] == 0xFFFF)) {
+                text.append(bytes[12] & 0xFF).append('.').append(bytes[13] & 0xFF).append('.')
+                        .append(bytes[14] & 0xFF).append('.').append(bytes[15] & 0xFF);
+                break;
+            }
+            text.append(Integer.toHexString(words[i]));
+        }
+        return text.toString();
+    }
+
+}
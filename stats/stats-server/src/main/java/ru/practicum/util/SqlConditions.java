@@ -0,0 +1,43 @@
+package ru.practicum.util;
+
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import ru.practicum.rollup.model.TimeRange;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+public final class SqlConditions {
+
+    private SqlConditions() {
+    }
+
+    public static String rangeCondition(String column, String prefix, List<TimeRange> ranges, MapSqlParameterSource parameters) {
+        List<String> conditions = new ArrayList<>();
+        for (int i = 0; i < ranges.size(); i++) {
+            String startName = prefix + "Start" + i;
+            String endName = prefix + "End" + i;
+            parameters.addValue(startName, ranges.get(i).getStart());
+            parameters.addValue(endName, ranges.get(i).getEnd());
+            conditions.add(column + " >= :" + startName + " AND " + column + " < :" + endName);
+        }
+        return "(" + String.join(" OR ", conditions) + ")";
+    }
+
+    public static String fromCondition(String column, LocalDateTime from) {
+        return from == null ? "" : "WHERE " + column + " >= :from\n";
+    }
+
+    public static String uriCondition(List<String> uris) {
+        return uris != null ? " AND uri IN (:uris)" : "";
+    }
+
+    public static String uriIdCondition(List<String> uris) {
+        return uris != null ? " AND uri_id IN (SELECT id FROM uris WHERE uri IN (:uris))" : "";
+    }
+
+    public static String limitClause(Integer limit) {
+        return limit != null ? "\nLIMIT :limit" : "";
+    }
+
+}
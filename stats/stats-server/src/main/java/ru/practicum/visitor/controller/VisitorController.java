@@ -0,0 +1,26 @@
+package ru.practicum.visitor.controller;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import ru.practicum.visitor.service.VisitorService;
+
+@Slf4j
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/admin/visitors")
+public class VisitorController {
+
+    private final VisitorService visitorService;
+
+    @PostMapping("/backfill")
+    public ResponseEntity<Void> backfill() {
+        log.info("Received POST-request at /admin/visitors/backfill endpoint");
+        visitorService.backfill();
+        return ResponseEntity.noContent().build();
+    }
+
+}
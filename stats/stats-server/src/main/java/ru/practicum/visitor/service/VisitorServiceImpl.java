@@ -0,0 +1,296 @@
+package ru.practicum.visitor.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.cache.service.StatsCache;
+import ru.practicum.dimension.service.Dimensions;
+import ru.practicum.exception.ConflictException;
+import ru.practicum.hit.model.EndpointHit;
+import ru.practicum.ingest.service.Accumulator;
+import ru.practicum.ingest.service.HitCounters;
+import ru.practicum.partition.service.PartitionService;
+import ru.practicum.rollup.model.AppUri;
+import ru.practicum.rollup.model.Granularity;
+import ru.practicum.rollup.model.RollupKey;
+import ru.practicum.rollup.model.RollupPlan;
+import ru.practicum.stats.dto.ViewStatsDto;
+import ru.practicum.util.SqlConditions;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps a bitmap of visitor ip ids per (app, uri, day). Ips of new hits are buffered in memory and merged into
+ * visitors_day every {@code flush-interval-ms}, so a hot bitmap row is locked once per flush instead of once
+ * per request. Ips of a failed flush are put back into the buffer and merged by the next one.
+ */
+@Slf4j
+@Service
+public class VisitorServiceImpl implements VisitorService, DisposableBean {
+
+    private static final int KEYS_PER_STATEMENT = 1000;
+
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Dimensions dimensions;
+    private final StatsCache statsCache;
+    private final PartitionService partitionService;
+    private final HitCounters hitCounters;
+    private final boolean enabled;
+    private final Accumulator<Set<String>> buffer;
+
+    public VisitorServiceImpl(NamedParameterJdbcTemplate namedJdbcTemplate,
+                              TransactionTemplate transactionTemplate,
+                              Dimensions dimensions,
+                              StatsCache statsCache,
+                              PartitionService partitionService,
+                              HitCounters hitCounters,
+                              @Value("${stats.visitors.enabled:true}") boolean enabled,
+                              @Value("${stats.visitors.max-keys:100000}") int maxKeys) {
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.dimensions = dimensions;
+        this.statsCache = statsCache;
+        this.partitionService = partitionService;
+        this.hitCounters = hitCounters;
+        this.enabled = enabled;
+        this.buffer = new Accumulator<>(ConcurrentHashMap::newKeySet, maxKeys);
+    }
+
+    @Override
+    public void addHits(List<EndpointHit> endpointHits) {
+        if (!enabled) {
+            return;
+        }
+        Map<RollupKey, Set<String>> overflow = new TreeMap<>(RollupKey.ORDER);
+        for (EndpointHit endpointHit : endpointHits) {
+            RollupKey key = new RollupKey(endpointHit.getApp(),
+                    endpointHit.getUri(),
+                    Granularity.DAY.floor(endpointHit.getTimestamp()));
+            if (!buffer.update(key, ips -> ips.add(endpointHit.getIp()))) {
+                overflow.computeIfAbsent(key, k -> new HashSet<>()).add(endpointHit.getIp());
+            }
+        }
+        if (!overflow.isEmpty()) {
+            transactionTemplate.executeWithoutResult(status -> writeVisitors(overflow));
+            invalidateStats(overflow);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${stats.visitors.flush-interval-ms:1000}")
+    public synchronized void flush() {
+        Map<RollupKey, Set<String>> visitorIps = buffer.drain();
+        if (visitorIps.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> writeVisitors(visitorIps));
+            invalidateStats(visitorIps);
+            log.debug("Сброшены битовые карты посетителей: {} ключей", visitorIps.size());
+        } catch (RuntimeException e) {
+            log.warn("Не удалось сбросить битовые карты посетителей: {} ключей, повтор при следующем сбросе",
+                    visitorIps.size(), e);
+            buffer.restore(visitorIps, Set::addAll);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        flush();
+    }
+
+    private void writeVisitors(Map<RollupKey, Set<String>> visitorIps) {
+        Map<String, Integer> ids = dimensions.getIps().resolve(visitorIps.values().stream()
+                .flatMap(Set::stream)
+                .collect(Collectors.toSet()));
+        Map<RollupKey, RoaringBitmap> visitors = new TreeMap<>(RollupKey.ORDER);
+        visitorIps.forEach((key, ips) -> {
+            RoaringBitmap bitmap = new RoaringBitmap();
+            ips.forEach(ip -> bitmap.add(ids.get(ip)));
+            visitors.put(key, bitmap);
+        });
+        mergeVisitors(visitors);
+    }
+
+    private void invalidateStats(Map<RollupKey, Set<String>> visitorIps) {
+        statsCache.invalidate(visitorIps.keySet().stream()
+                .map(RollupKey::getUri)
+                .collect(Collectors.toSet()));
+    }
+
+    private void mergeVisitors(Map<RollupKey, RoaringBitmap> visitors) {
+        List<RollupKey> keys = new ArrayList<>(visitors.keySet());
+        for (int from = 0; from < keys.size(); from += KEYS_PER_STATEMENT) {
+            List<RollupKey> chunk = keys.subList(from, Math.min(from + KEYS_PER_STATEMENT, keys.size()));
+            byte[] empty = toBytes(new RoaringBitmap());
+            namedJdbcTemplate.batchUpdate("INSERT INTO visitors_day (app, uri, bucket, visitors)\n" +
+                            "VALUES (:app, :uri, :bucket, :visitors)\n" +
+                            "ON CONFLICT (app, uri, bucket) DO NOTHING",
+                    chunk.stream()
+                            .map(key -> keyParameters(key).addValue("visitors", empty))
+                            .toArray(MapSqlParameterSource[]::new));
+            MapSqlParameterSource parameters = new MapSqlParameterSource("keys", chunk.stream()
+                    .map(key -> new Object[]{key.getApp(), key.getUri(), key.getBucket()})
+                    .collect(Collectors.toList()));
+            namedJdbcTemplate.query("SELECT app, uri, bucket, visitors\n" +
+                    "FROM visitors_day\n" +
+                    "WHERE (app, uri, bucket) IN (:keys)\n" +
+                    "ORDER BY app, uri, bucket\n" +
+                    "FOR UPDATE", parameters, rs -> {
+                RollupKey key = new RollupKey(rs.getString("app"),
+                        rs.getString("uri"),
+                        rs.getTimestamp("bucket").toLocalDateTime());
+                visitors.get(key).or(fromBytes(rs.getBytes("visitors")));
+            });
+            namedJdbcTemplate.batchUpdate("UPDATE visitors_day SET visitors = :visitors\n" +
+                            "WHERE app = :app AND uri = :uri AND bucket = :bucket",
+                    chunk.stream()
+                            .map(key -> keyParameters(key).addValue("visitors", toBytes(visitors.get(key))))
+                            .toArray(MapSqlParameterSource[]::new));
+        }
+    }
+
+    private MapSqlParameterSource keyParameters(RollupKey key) {
+        return new MapSqlParameterSource()
+                .addValue("app", key.getApp())
+                .addValue("uri", key.getUri())
+                .addValue("bucket", key.getBucket());
+    }
+
+    @Override
+    public boolean coversWholeDays(LocalDateTime start, LocalDateTime end) {
+        return enabled && !RollupPlan.of(start, end, Granularity.DAY, Granularity.DAY).getRanges(Granularity.DAY).isEmpty();
+    }
+
+    @Override
+    public List<ViewStatsDto> getUniqueStats(LocalDateTime start, LocalDateTime end, List<String> uris, Integer limit) {
+        RollupPlan plan = RollupPlan.of(start, end, Granularity.DAY, Granularity.DAY);
+        log.info("Extracting unique stats from start={} to end={} and uri in ({}) using visitor bitmaps {} and raw ranges {}",
+                start, end, uris, plan.getBuckets(), plan.getRaw());
+        Map<AppUri, RoaringBitmap> visitors = new HashMap<>();
+        Map<AppUri, Set<String>> unknownIps = new HashMap<>();
+        if (!plan.getRanges(Granularity.DAY).isEmpty()) {
+            MapSqlParameterSource parameters = new MapSqlParameterSource("uris", uris);
+            String sql = "SELECT app, uri, visitors\n" +
+                    "FROM visitors_day\n" +
+                    "WHERE " + SqlConditions.rangeCondition("bucket", "day", plan.getRanges(Granularity.DAY), parameters) +
+                    SqlConditions.uriCondition(uris);
+            namedJdbcTemplate.query(sql, parameters, rs -> {
+                AppUri key = new AppUri(rs.getString("app"), rs.getString("uri"));
+                visitors.computeIfAbsent(key, k -> new RoaringBitmap()).or(fromBytes(rs.getBytes("visitors")));
+            });
+        }
+        if (!plan.getRaw().isEmpty()) {
+            MapSqlParameterSource parameters = new MapSqlParameterSource("uris", uris);
+            String sql = "SELECT apps.app, uris.uri, host(raw.ip) AS ip, visitor_ips.id\n" +
+                    "FROM (SELECT DISTINCT app_id, uri_id, ip\n" +
+                    "      FROM public.hits\n" +
+                    "      WHERE " + SqlConditions.rangeCondition("created_date", "raw", plan.getRaw(), parameters) +
+                    SqlConditions.uriIdCondition(uris) + ") AS raw\n" +
+                    "JOIN apps ON apps.id = raw.app_id\n" +
+                    "JOIN uris ON uris.id = raw.uri_id\n" +
+                    "LEFT JOIN visitor_ips ON visitor_ips.ip = raw.ip";
+            namedJdbcTemplate.query(sql, parameters, rs -> {
+                AppUri key = new AppUri(rs.getString("app"), rs.getString("uri"));
+                RoaringBitmap bitmap = visitors.computeIfAbsent(key, k -> new RoaringBitmap());
+                int id = rs.getInt("id");
+                if (rs.wasNull()) {
+                    unknownIps.computeIfAbsent(key, k -> new HashSet<>()).add(rs.getString("ip"));
+                } else {
+                    bitmap.add(id);
+                }
+            });
+        }
+        return visitors.entrySet().stream()
+                .map(entry -> ViewStatsDto.builder()
+                        .app(entry.getKey().getApp())
+                        .uri(entry.getKey().getUri())
+                        .hits(entry.getValue().getCardinality() +
+                                unknownIps.getOrDefault(entry.getKey(), Set.of()).size())
+                        .build())
+                .sorted(Comparator.comparing(ViewStatsDto::getHits).reversed())
+                .limit(limit != null ? limit : Long.MAX_VALUE)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Rebuilds the bitmaps of the days whose raw hits are all retained; bitmaps of older days are kept as they are.
+     */
+    @Override
+    @Transactional
+    public void backfill() {
+        if (hitCounters.isRawSampled()) {
+            log.info("Битовые карты посетителей нельзя пересчитать по выборке сырых просмотров");
+            throw new ConflictException();
+        }
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(namedJdbcTemplate.getJdbcTemplate().getDataSource());
+        jdbcTemplate.setFetchSize(10_000);
+        jdbcTemplate.execute("LOCK TABLE public.hits IN SHARE MODE");
+        NamedParameterJdbcTemplate backfillTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        LocalDateTime from = partitionService.getRetainedFrom(LocalDateTime.now());
+        MapSqlParameterSource parameters = new MapSqlParameterSource("from", from);
+        backfillTemplate.update("DELETE FROM visitors_day\n" +
+                SqlConditions.fromCondition("bucket", from), parameters);
+        int ips = backfillTemplate.update("INSERT INTO visitor_ips (ip)\n" +
+                "SELECT DISTINCT ip FROM public.hits\n" +
+                SqlConditions.fromCondition("created_date", from) +
+                "ON CONFLICT (ip) DO NOTHING", parameters);
+        Map<RollupKey, RoaringBitmap> visitors = new TreeMap<>(RollupKey.ORDER);
+        backfillTemplate.query("SELECT apps.app, uris.uri, date_trunc('day', created_date) AS bucket, visitor_ips.id\n" +
+                "FROM public.hits\n" +
+                "JOIN apps ON apps.id = hits.app_id\n" +
+                "JOIN uris ON uris.id = hits.uri_id\n" +
+                "JOIN visitor_ips ON visitor_ips.ip = hits.ip\n" +
+                SqlConditions.fromCondition("created_date", from), parameters, rs -> {
+            RollupKey key = new RollupKey(rs.getString("app"),
+                    rs.getString("uri"),
+                    rs.getTimestamp("bucket").toLocalDateTime());
+            visitors.computeIfAbsent(key, k -> new RoaringBitmap()).add(rs.getInt("id"));
+            if (visitors.size() >= KEYS_PER_STATEMENT) {
+                mergeVisitors(visitors);
+                visitors.clear();
+            }
+        });
+        mergeVisitors(visitors);
+        log.info("Пересчитаны битовые карты посетителей начиная с {}, новых IP в словаре: {}", from, ips);
+    }
+
+    private static byte[] toBytes(RoaringBitmap bitmap) {
+        bitmap.runOptimize();
+        ByteBuffer buffer = ByteBuffer.allocate(bitmap.serializedSizeInBytes());
+        bitmap.serialize(buffer);
+        return buffer.array();
+    }
+
+    private static RoaringBitmap fromBytes(byte[] bytes) {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        try {
+            bitmap.deserialize(ByteBuffer.wrap(bytes));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bitmap;
+    }
+
+}
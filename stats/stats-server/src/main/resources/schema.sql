@@ -1,11 +1,100 @@
+CREATE TABLE IF NOT EXISTS apps (
+  id INTEGER GENERATED BY DEFAULT AS IDENTITY,
+  app VARCHAR(255) NOT NULL,
+  CONSTRAINT pk_apps PRIMARY KEY (id),
+  CONSTRAINT uq_apps_app UNIQUE (app)
+);
+
+CREATE TABLE IF NOT EXISTS uris (
+  id INTEGER GENERATED BY DEFAULT AS IDENTITY,
+  uri VARCHAR(255) NOT NULL,
+  CONSTRAINT pk_uris PRIMARY KEY (id),
+  CONSTRAINT uq_uris_uri UNIQUE (uri)
+);
+
 CREATE TABLE IF NOT EXISTS hits (
-  id BIGINT GENERATED BY DEFAULT AS IDENTITY,
-  app VARCHAR(255),
-  uri VARCHAR(255),
-  ip VARCHAR(255),
-  created_date TIMESTAMP WITHOUT TIME ZONE,
-  CONSTRAINT pk_hit PRIMARY KEY (id)
+  id BIGSERIAL,
+  app_id INTEGER NOT NULL,
+  uri_id INTEGER NOT NULL,
+  ip INET NOT NULL,
+  created_date TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+  CONSTRAINT pk_hit PRIMARY KEY (id, created_date)
+) PARTITION BY RANGE (created_date);
+
+CREATE TABLE IF NOT EXISTS hits_default PARTITION OF hits DEFAULT;
+
+CREATE INDEX IF NOT EXISTS ix_hits_created_date ON hits (created_date);
+CREATE INDEX IF NOT EXISTS ix_hits_uri_id_created_date ON hits (uri_id, created_date);
+
+CREATE TABLE IF NOT EXISTS hits_rollup_minute (
+  app VARCHAR(255) NOT NULL,
+  uri VARCHAR(255) NOT NULL,
+  bucket TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+  hits BIGINT NOT NULL,
+  CONSTRAINT pk_hits_rollup_minute PRIMARY KEY (app, uri, bucket)
+);
+
+CREATE TABLE IF NOT EXISTS hits_rollup_hour (
+  app VARCHAR(255) NOT NULL,
+  uri VARCHAR(255) NOT NULL,
+  bucket TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+  hits BIGINT NOT NULL,
+  CONSTRAINT pk_hits_rollup_hour PRIMARY KEY (app, uri, bucket)
+);
+
+CREATE TABLE IF NOT EXISTS hits_rollup_day (
+  app VARCHAR(255) NOT NULL,
+  uri VARCHAR(255) NOT NULL,
+  bucket TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+  hits BIGINT NOT NULL,
+  CONSTRAINT pk_hits_rollup_day PRIMARY KEY (app, uri, bucket)
+);
+
+CREATE INDEX IF NOT EXISTS ix_hits_rollup_minute_bucket ON hits_rollup_minute (bucket);
+CREATE INDEX IF NOT EXISTS ix_hits_rollup_hour_bucket ON hits_rollup_hour (bucket);
+CREATE INDEX IF NOT EXISTS ix_hits_rollup_day_bucket ON hits_rollup_day (bucket);
+
+CREATE TABLE IF NOT EXISTS hits_sketch_hour (
+  app VARCHAR(255) NOT NULL,
+  uri VARCHAR(255) NOT NULL,
+  bucket TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+  sketch BYTEA NOT NULL,
+  CONSTRAINT pk_hits_sketch_hour PRIMARY KEY (app, uri, bucket)
+);
+
+CREATE INDEX IF NOT EXISTS ix_hits_sketch_hour_bucket ON hits_sketch_hour (bucket);
+
+CREATE TABLE IF NOT EXISTS visitor_ips (
+  id INTEGER GENERATED BY DEFAULT AS IDENTITY,
+  ip INET NOT NULL,
+  CONSTRAINT pk_visitor_ips PRIMARY KEY (id),
+  CONSTRAINT uq_visitor_ips_ip UNIQUE (ip)
+);
+
+CREATE TABLE IF NOT EXISTS visitors_day (
+  app VARCHAR(255) NOT NULL,
+  uri VARCHAR(255) NOT NULL,
+  bucket TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+  visitors BYTEA NOT NULL,
+  CONSTRAINT pk_visitors_day PRIMARY KEY (app, uri, bucket)
 );
 
+CREATE INDEX IF NOT EXISTS ix_visitors_day_bucket ON visitors_day (bucket);
+
+DELETE FROM visitors_day;
+DELETE FROM visitor_ips;
+ALTER TABLE visitor_ips ALTER COLUMN id RESTART WITH 1;
+
+DELETE FROM hits_sketch_hour;
+
+DELETE FROM hits_rollup_minute;
+DELETE FROM hits_rollup_hour;
+DELETE FROM hits_rollup_day;
+
 DELETE FROM hits;
-ALTER TABLE hits ALTER COLUMN id RESTART WITH 1;
\ No newline at end of file
+ALTER SEQUENCE hits_id_seq RESTART WITH 1;
+
+DELETE FROM apps;
+ALTER TABLE apps ALTER COLUMN id RESTART WITH 1;
+DELETE FROM uris;
+ALTER TABLE uris ALTER COLUMN id RESTART WITH 1;
\ No newline at end of file
@@ -0,0 +1,57 @@
+package ru.practicum.sketch.model;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class HyperLogLogTest {
+
+    private static final int VALUES = 100_000;
+    private static final int SKETCHES = 200;
+    private static final int VALUES_PER_SKETCH = 500;
+
+    @Test
+    void estimateIsWithinStandardError() {
+        HyperLogLog sketch = new HyperLogLog();
+        for (int i = 0; i < VALUES; i++) {
+            sketch.add(ip(i));
+            sketch.add(ip(i));
+        }
+        assertEstimate(VALUES, sketch.estimate());
+    }
+
+    @Test
+    void mergeOfSerializedSketchesEqualsDirectSketch() {
+        List<HyperLogLog> sketches = new ArrayList<>();
+        for (int i = 0; i < SKETCHES; i++) {
+            HyperLogLog sketch = new HyperLogLog();
+            for (int j = 0; j < VALUES_PER_SKETCH; j++) {
+                sketch.add(ip(i * VALUES_PER_SKETCH + j));
+            }
+            sketches.add(HyperLogLog.fromBytes(sketch.toBytes()));
+        }
+        HyperLogLog union = new HyperLogLog();
+        for (HyperLogLog sketch : sketches) {
+            union.merge(sketch);
+        }
+        HyperLogLog direct = new HyperLogLog();
+        for (int i = 0; i < SKETCHES * VALUES_PER_SKETCH; i++) {
+            direct.add(ip(i));
+        }
+        Assertions.assertEquals(direct.estimate(), union.estimate());
+        assertEstimate(SKETCHES * VALUES_PER_SKETCH, union.estimate());
+    }
+
+    private static void assertEstimate(long expected, long estimate) {
+        double error = Math.abs(estimate - expected) / (double) expected;
+        Assertions.assertTrue(error < 3 * HyperLogLog.STANDARD_ERROR,
+                "estimate " + estimate + " of " + expected + " is off by " + error);
+    }
+
+    private static String ip(int i) {
+        return (i >>> 24 & 0xFF) + "." + (i >>> 16 & 0xFF) + "." + (i >>> 8 & 0xFF) + "." + (i & 0xFF);
+    }
+
+}
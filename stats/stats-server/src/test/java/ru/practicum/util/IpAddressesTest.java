@@ -0,0 +1,27 @@
+package ru.practicum.util;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class IpAddressesTest {
+
+    @Test
+    void canonicalMatchesPostgresHostOutput() {
+        Assertions.assertEquals("1.2.3.4", IpAddresses.canonical("1.2.3.4"));
+        Assertions.assertEquals("::1", IpAddresses.canonical("0:0:0:0:0:0:0:1"));
+        Assertions.assertEquals("::", IpAddresses.canonical("0::0"));
+        Assertions.assertEquals("2001:db8::1:0:0:1", IpAddresses.canonical("2001:DB8:0:0:1:0:0:1"));
+        Assertions.assertEquals("2001:db8:0:1:1:1:1:1", IpAddresses.canonical("2001:db8:0:1:1:1:1:1"));
+        Assertions.assertEquals("::1.2.3.4", IpAddresses.canonical("::102:304"));
+        Assertions.assertEquals("1.2.3.4", IpAddresses.canonical("::FFFF:1.2.3.4"));
+    }
+
+    @Test
+    void canonicalRejectsNonLiterals() {
+        Assertions.assertNull(IpAddresses.canonical("01.2.3.4"));
+        Assertions.assertNull(IpAddresses.canonical("fe80::1%eth0"));
+        Assertions.assertNull(IpAddresses.canonical("localhost"));
+        Assertions.assertNull(IpAddresses.canonical("1::2::3"));
+    }
+
+}